@@ -0,0 +1,63 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.AnalyticsQuery;
+import com.kinduberre.transactionprocessor.dto.AnalyticsRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dashboard queries against the column store of one user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int transactionCount;
+
+    private final TransactionColumns columns = new TransactionColumns();
+
+    private final AnalyticsQuery spendByParticipant = new AnalyticsQuery(AnalyticsQuery.GroupBy.PARTICIPANT,
+            null, null, null, null, "outgoing", 10);
+    private final AnalyticsQuery feesByMonth = new AnalyticsQuery(AnalyticsQuery.GroupBy.MONTH,
+            null, null, null, null, null, null);
+    private final AnalyticsQuery balanceByDayInMarch = new AnalyticsQuery(AnalyticsQuery.GroupBy.DAY,
+            LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31), null, null, null, null);
+
+    @Setup
+    public void setUp() {
+        BenchmarkData.transactions(transactionCount).forEach(columns::add);
+    }
+
+    @Benchmark
+    public List<AnalyticsRow> spendByParticipant() {
+        return columns.query(spendByParticipant);
+    }
+
+    @Benchmark
+    public List<AnalyticsRow> feesByMonth() {
+        return columns.query(feesByMonth);
+    }
+
+    @Benchmark
+    public List<AnalyticsRow> balanceByDayInMarch() {
+        return columns.query(balanceByDayInMarch);
+    }
+}
@@ -0,0 +1,96 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic M-PESA messages and LLM replies for the benchmarks and the load harness.
+ * A fixed seed keeps runs comparable.
+ */
+final class BenchmarkData {
+
+    private static final String[] NAMES = {"JOHN DOE", "JANE WANJIKU", "PETER OTIENO", "MARY AKINYI", "NAIVAS SUPERMARKET"};
+    private static final String[] TYPES = {"send_money", "receive_money", "merchant_payment", "paybill", "bank_transfer"};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Messages in shapes the template parser does not know, so they all need the LLM.
+     * Every message is distinct unless {@code distinct} is smaller than {@code count}.
+     */
+    static List<String> messages(int count, int distinct) {
+        Random random = new Random(42);
+        List<String> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = i % Math.max(1, distinct);
+            messages.add(String.format("QK%08dX Confirmed. Fuliza M-PESA amount is Ksh %d.%02d. Interest charged Ksh %d.00. "
+                            + "Total Fuliza M-PESA outstanding amount is Ksh %d.00 due on %d/%d/24. To check %s limit dial *234*0#.",
+                    id, 50 + random.nextInt(5000), random.nextInt(100), random.nextInt(50),
+                    random.nextInt(20000), 1 + random.nextInt(28), 1 + random.nextInt(12), NAMES[id % NAMES.length]));
+        }
+        return messages;
+    }
+
+    static List<TransactionData> transactions(int count) {
+        Random random = new Random(42);
+        List<TransactionData> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TransactionData transaction = new TransactionData();
+            transaction.setTransactionId(String.format("QK%08dX", i));
+            transaction.setStatus("Confirmed");
+            transaction.setType(TYPES[random.nextInt(TYPES.length)]);
+            transaction.setAmount(new TransactionData.AmountData(
+                    BigDecimal.valueOf(50 + random.nextInt(50_000), 2), "KSH"));
+            transaction.setTransactionCost(new TransactionData.AmountData(
+                    BigDecimal.valueOf(random.nextInt(10_000), 2), "KSH"));
+            transaction.setTransactionDate((1 + random.nextInt(28)) + "/" + (1 + random.nextInt(12)) + "/24");
+            transaction.setTransactionTime("10:15 AM");
+            transaction.setMerchant(NAMES[i % NAMES.length]);
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+
+    /**
+     * An Anthropic Messages reply holding one extracted transaction per id.
+     */
+    static String anthropicReply(ObjectMapper objectMapper, List<String> transactionIds) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (int i = 0; i < transactionIds.size(); i++) {
+            ObjectNode transaction = array.addObject()
+                    .put("transaction_id", transactionIds.get(i))
+                    .put("type", TYPES[i % TYPES.length])
+                    .put("status", "Confirmed")
+                    .put("direction", "outgoing")
+                    .put("date", "12/3/24")
+                    .put("time", "10:15 AM");
+            transaction.putObject("amount").put("value", 100 + i).put("currency", "KSH");
+            transaction.putObject("participant").put("type", "individual").put("name", NAMES[i % NAMES.length]);
+            transaction.putObject("balance_after").put("value", 5000).put("currency", "KSH");
+            transaction.putObject("transaction_cost").put("value", 13).put("currency", "KSH");
+        }
+        ObjectNode reply = objectMapper.createObjectNode()
+                .put("id", "msg_benchmark")
+                .put("type", "message")
+                .put("role", "assistant")
+                .put("stop_reason", "end_turn");
+        reply.putArray("content").addObject().put("type", "text").put("text", array.toString());
+        reply.putObject("usage").put("input_tokens", 2000).put("output_tokens", 150 * transactionIds.size());
+        return reply.toString();
+    }
+
+    /**
+     * The transaction code each message starts with.
+     */
+    static List<String> transactionIds(List<String> messages) {
+        return messages.stream().map(message -> message.substring(0, message.indexOf(' '))).toList();
+    }
+}
@@ -0,0 +1,68 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-batch CPU cost of the LLM path: building the message section, parsing the reply and
+ * packing an upload into batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({"10", "50"})
+    public int batchSize;
+
+    private ExtractionPrompt prompt;
+    private LLMResponseParser responseParser;
+    private TokenBudgetBatcher batcher;
+
+    private List<String> batch;
+    private List<String> upload;
+    private String reply;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        responseParser = new LLMResponseParser(objectMapper);
+        batcher = new TokenBudgetBatcher(6000, 4000, 0.8, 220, 50);
+        prompt = new ExtractionPrompt("compact", true, 1024, new String[]{"haiku=2048"});
+
+        batch = BenchmarkData.messages(batchSize, batchSize);
+        upload = BenchmarkData.messages(batchSize * 100, batchSize * 100);
+        reply = BenchmarkData.anthropicReply(objectMapper, BenchmarkData.transactionIds(batch));
+    }
+
+    @Benchmark
+    public String buildPrompt() {
+        return prompt.messageSection(batch);
+    }
+
+    @Benchmark
+    public LLMParseResult parseReply() {
+        return responseParser.parse(reply);
+    }
+
+    @Benchmark
+    public List<List<String>> createBatches() {
+        return batcher.createBatches(upload);
+    }
+}
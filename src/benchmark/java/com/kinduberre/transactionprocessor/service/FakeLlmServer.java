@@ -0,0 +1,112 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded stand-in for the Anthropic Messages endpoint. It answers every prompt with
+ * one transaction per "Message N:" line after a configurable delay, fails a share of
+ * requests with 529 (overloaded), and records how many calls were open at once.
+ */
+final class FakeLlmServer implements AutoCloseable {
+
+    private static final Pattern MESSAGE_LINE = Pattern.compile("^Message \\d+: (\\S+)", Pattern.MULTILINE);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final long latencyMillis;
+    private final long latencyPerMessageMillis;
+    private final double errorRate;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    FakeLlmServer(long latencyMillis, long latencyPerMessageMillis, double errorRate) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.latencyPerMessageMillis = latencyPerMessageMillis;
+        this.errorRate = errorRate;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/messages", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v1/messages";
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int failures() {
+        return failures.get();
+    }
+
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int open = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(open, Math::max);
+        try {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String prompt = request.path("messages").path(0).path("content").asText();
+            List<String> ids = new ArrayList<>();
+            Matcher matcher = MESSAGE_LINE.matcher(prompt);
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+
+            Thread.sleep(latencyMillis + latencyPerMessageMillis * ids.size());
+
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                failures.incrementAndGet();
+                respond(exchange, 529, "{\"type\":\"error\",\"error\":{\"type\":\"overloaded_error\"}}");
+            } else {
+                respond(exchange, 200, BenchmarkData.anthropicReply(objectMapper, ids));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 500, "{}");
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,133 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.TransactionProcessorApplication;
+import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-to-end load run of {@link TransactionProcessingService} against {@link FakeLlmServer}.
+ * Settings are passed as {@code key=value} arguments; {@code harness.*} and
+ * {@code fake.*} keys configure the run, anything else overrides application properties
+ * (for example {@code llm.batch.max-in-flight=8}).
+ */
+public final class LoadHarness {
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("harness.requests", "8");
+        settings.put("harness.concurrency", "4");
+        settings.put("harness.messages", "500");
+        // Send the same messages in every request to exercise the cache and coalescing
+        settings.put("harness.shared", "false");
+        settings.put("fake.latency-ms", "400");
+        settings.put("fake.latency-per-message-ms", "20");
+        settings.put("fake.error-rate", "0.0");
+        // Measure the service, not the provider limits or external services
+        settings.put("llm.governor.requests-per-minute", "100000");
+        settings.put("llm.governor.tokens-per-minute", "100000000");
+        settings.put("llm.governor.retry.initial-backoff", "100ms");
+        settings.put("persistence.enabled", "false");
+        settings.put("spring.sql.init.mode", "never");
+        settings.put("extraction.cache.disk.enabled", "false");
+        settings.put("logging.level.root", "WARN");
+        settings.put("logging.level.org.springframework.web", "WARN");
+        settings.put("logging.level.com.kinduberre", "WARN");
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                settings.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+        }
+
+        int requestCount = intSetting(settings, "harness.requests");
+        int concurrency = intSetting(settings, "harness.concurrency");
+        int messagesPerRequest = intSetting(settings, "harness.messages");
+        boolean shared = Boolean.parseBoolean(settings.get("harness.shared").toString());
+
+        try (FakeLlmServer llm = new FakeLlmServer(intSetting(settings, "fake.latency-ms"),
+                intSetting(settings, "fake.latency-per-message-ms"),
+                Double.parseDouble(settings.get("fake.error-rate").toString()))) {
+            settings.put("llm.api.url", llm.url());
+
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionProcessorApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(commandLine(settings))) {
+                TransactionProcessingService service = context.getBean(TransactionProcessingService.class);
+
+                List<String> all = BenchmarkData.messages(messagesPerRequest * requestCount,
+                        messagesPerRequest * requestCount);
+                ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+                List<Future<ProcessingResponse>> responses = new ArrayList<>();
+                List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+                long start = System.nanoTime();
+                for (int r = 0; r < requestCount; r++) {
+                    int offset = shared ? 0 : r * messagesPerRequest;
+                    List<String> messages = all.subList(offset, offset + messagesPerRequest);
+                    responses.add(clients.submit(() -> {
+                        long requestStart = System.nanoTime();
+                        ProcessingResponse response = service.processTransactionsBulk(new BulkTransactionRequest(messages));
+                        latencies.add((System.nanoTime() - requestStart) / 1_000_000);
+                        return response;
+                    }));
+                }
+
+                int transactions = 0;
+                int errors = 0;
+                for (Future<ProcessingResponse> response : responses) {
+                    transactions += response.get().getSuccessfullyProcessed();
+                    errors += response.get().getErrors() != null ? response.get().getErrors().size() : 0;
+                }
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                clients.shutdown();
+
+                int totalMessages = requestCount * messagesPerRequest;
+                Collections.sort(latencies);
+                System.out.printf("%nrequests            %d x %d messages, %d concurrent%n",
+                        requestCount, messagesPerRequest, concurrency);
+                System.out.printf("wall time           %d ms%n", elapsedMillis);
+                System.out.printf("throughput          %.1f messages/s%n", totalMessages * 1000.0 / elapsedMillis);
+                System.out.printf("per message         %.3f ms%n", (double) elapsedMillis / totalMessages);
+                System.out.printf("request latency     p50 %d ms, p95 %d ms, max %d ms%n",
+                        percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 1.0));
+                System.out.printf("extracted           %d transactions, %d errors%n", transactions, errors);
+                System.out.printf("LLM calls           %d (%d failed), %.3f per message, max %d in flight%n",
+                        llm.requests(), llm.failures(), (double) llm.requests() / totalMessages, llm.maxInFlight());
+            }
+        }
+    }
+
+    private static String[] commandLine(Map<String, Object> settings) {
+        // Passed as command line arguments so they take precedence over application.yml
+        return settings.entrySet().stream()
+                .map(setting -> "--" + setting.getKey() + "=" + setting.getValue())
+                .toArray(String[]::new);
+    }
+
+    private static int intSetting(Map<String, Object> settings, String key) {
+        return Integer.parseInt(settings.get(key).toString());
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index));
+    }
+}
@@ -0,0 +1,47 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingStats;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the stats pass over a processed upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatsBenchmark {
+
+    @Param({"1000", "100000"})
+    public int transactionCount;
+
+    private final TransactionStatsService statsService = new TransactionStatsService();
+
+    private List<TransactionData> transactions;
+
+    @Setup
+    public void setUp() {
+        transactions = BenchmarkData.transactions(transactionCount);
+    }
+
+    @Benchmark
+    public ProcessingStats calculateStats() {
+        return statsService.calculateStats(transactions);
+    }
+}
@@ -0,0 +1,74 @@
+#!/usr/bin/env bash
+#
+# Cold-start benchmark of the packaged service. Compares the default configuration with
+# the fast-startup profile alone, with Spring AOT, and with AOT plus a class data sharing
+# archive recorded in a training run. Time to ready is measured from launching the JVM
+# until /actuator/health/readiness answers, next to the time Spring reports in its log.
+#
+#   mvn -Pfast-startup package -DskipTests
+#   src/benchmark/startup.sh [runs] [-- application arguments]
+#
+# Application arguments are passed to every run, e.g. the datasource of the environment.
+# Without a database: -- --spring.sql.init.mode=never --persistence.enabled=false
+set -euo pipefail
+
+cd "$(dirname "$0")/../.."
+RUNS=${1:-5}
+[ $# -gt 0 ] && shift
+[ "${1:-}" = "--" ] && shift
+APP_ARGS=("$@")
+PORT=${PORT:-8180}
+WORK=target/startup
+
+JAR=$(ls target/transaction-processor-*.jar 2>/dev/null | grep -v '\.original$' | head -n 1 || true)
+if [ -z "$JAR" ] || [ ! -d target/spring-aot ]; then
+    echo "Build the AOT jar first: mvn -Pfast-startup package -DskipTests" >&2
+    exit 1
+fi
+
+# CDS needs the application unpacked, a nested jar cannot be mapped into the archive
+rm -rf "$WORK"
+java -Djarmode=tools -jar "$JAR" extract --destination "$WORK/app" > /dev/null
+APP="$WORK/app/$(basename "$JAR")"
+FAST=(-Dspring.profiles.active=fast-startup)
+AOT=(-Dspring.aot.enabled=true "${FAST[@]}")
+
+echo "Recording class data sharing archive"
+java -XX:ArchiveClassesAtExit="$WORK/app.jsa" -Dspring.context.exit=onRefresh "${AOT[@]}" \
+    -jar "$APP" --server.port="$PORT" "${APP_ARGS[@]}" > "$WORK/training.log" 2>&1
+
+median() {
+    sort -n | awk '{ v[NR] = $1 } END { print (NR % 2) ? v[(NR + 1) / 2] : (v[NR / 2] + v[NR / 2 + 1]) / 2 }'
+}
+
+measure() {
+    local name=$1
+    shift
+    local ready=() started=()
+    for run in $(seq "$RUNS"); do
+        local log="$WORK/$name-$run.log"
+        local begin
+        begin=$(date +%s%N)
+        java "$@" -jar "$APP" --server.port="$PORT" "${APP_ARGS[@]}" > "$log" 2>&1 &
+        local pid=$!
+        until curl -sf "http://localhost:$PORT/actuator/health/readiness" > /dev/null; do
+            if ! kill -0 "$pid" 2> /dev/null; then
+                echo "$name failed to start, see $log" >&2
+                exit 1
+            fi
+            sleep 0.02
+        done
+        ready+=($(( ($(date +%s%N) - begin) / 1000000 )))
+        started+=("$(grep -o 'Started [A-Za-z]* in [0-9.]*' "$log" | awk '{ print $NF * 1000 }')")
+        kill "$pid"
+        wait "$pid" 2> /dev/null || true
+    done
+    printf '%-22s %10s %12s\n' "$name" \
+        "$(printf '%s\n' "${ready[@]}" | median)" "$(printf '%s\n' "${started[@]}" | median)"
+}
+
+printf '\nMedian of %s runs\n%-22s %10s %12s\n' "$RUNS" "configuration" "ready ms" "started ms"
+measure default
+measure fast-startup "${FAST[@]}"
+measure fast-startup+aot "${AOT[@]}"
+measure fast-startup+aot+cds -XX:SharedArchiveFile="$WORK/app.jsa" "${AOT[@]}"
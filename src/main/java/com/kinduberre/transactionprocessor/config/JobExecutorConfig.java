@@ -0,0 +1,47 @@
+package com.kinduberre.transactionprocessor.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class JobExecutorConfig {
+
+    // Jobs still append to the journal while the executor shuts down, so it is closed after
+    @Bean
+    @DependsOn("jobJournal")
+    public ThreadPoolTaskExecutor jobExecutor(@Value("${jobs.executor.max-concurrent}") int maxConcurrent,
+                                              @Value("${jobs.executor.queue-capacity}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("job-");
+        // Jobs spend most of their time blocked on the LLM, so use virtual threads where available
+        if (Runtime.version().feature() >= 21) {
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("job-").getVirtualThreadFactory());
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+
+    // Streams hold a thread for as long as the client reads, so they never queue behind jobs;
+    // TransactionStreamService admits at most max-concurrent of them
+    @Bean
+    public ThreadPoolTaskExecutor streamExecutor(@Value("${streaming.max-concurrent}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        // Room for a stream admitted while the thread of a finished one is being returned
+        executor.setQueueCapacity(maxConcurrent);
+        executor.setThreadNamePrefix("stream-");
+        if (Runtime.version().feature() >= 21) {
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("stream-").getVirtualThreadFactory());
+        }
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
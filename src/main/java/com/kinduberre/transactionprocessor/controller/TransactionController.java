@@ -1,13 +1,33 @@
 package com.kinduberre.transactionprocessor.controller;
 
+import com.kinduberre.transactionprocessor.dto.AnalyticsQuery;
+import com.kinduberre.transactionprocessor.dto.AnalyticsResponse;
 import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.CacheStats;
+import com.kinduberre.transactionprocessor.dto.JobStatusResponse;
+import com.kinduberre.transactionprocessor.dto.ProcessingEvent;
 import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
+import com.kinduberre.transactionprocessor.dto.ResponseView;
+import com.kinduberre.transactionprocessor.dto.TransactionPage;
+import com.kinduberre.transactionprocessor.service.ExtractionCache;
+import com.kinduberre.transactionprocessor.service.ProcessingJobService;
+import com.kinduberre.transactionprocessor.service.ResponseProjection;
+import com.kinduberre.transactionprocessor.service.TransactionAnalyticsService;
+import com.kinduberre.transactionprocessor.service.TransactionPersistenceService;
 import com.kinduberre.transactionprocessor.service.TransactionProcessingService;
+import com.kinduberre.transactionprocessor.service.TransactionStreamService;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import reactor.core.publisher.Flux;
 
-import java.util.concurrent.CompletableFuture;
+import java.net.URI;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/api/v1/transactions")
@@ -16,27 +36,139 @@ public class TransactionController {
 
     private final TransactionProcessingService processingService;
 
-    public TransactionController(TransactionProcessingService processingService) {
+    private final ProcessingJobService jobService;
+
+    private final TransactionStreamService streamService;
+
+    private final TransactionPersistenceService persistenceService;
+
+    private final ExtractionCache extractionCache;
+
+    private final TransactionAnalyticsService analyticsService;
+
+    public TransactionController(TransactionProcessingService processingService, ProcessingJobService jobService,
+                                 TransactionStreamService streamService,
+                                 TransactionPersistenceService persistenceService, ExtractionCache extractionCache,
+                                 TransactionAnalyticsService analyticsService) {
         this.processingService = processingService;
+        this.jobService = jobService;
+        this.streamService = streamService;
+        this.persistenceService = persistenceService;
+        this.extractionCache = extractionCache;
+        this.analyticsService = analyticsService;
     }
 
     @PostMapping("/process")
     public ResponseEntity<ProcessingResponse> processTransactions(
-            @Valid @RequestBody BulkTransactionRequest request) {
+            @Valid @RequestBody BulkTransactionRequest request,
+            @RequestParam(defaultValue = "FULL") ResponseView view) {
 
         ProcessingResponse response = processingService.processTransactionsBulk(request);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(ResponseProjection.project(response, view));
+    }
+
+    @PostMapping(value = "/process/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProcessingEvent> processTransactionsNdjson(
+            @Valid @RequestBody BulkTransactionRequest request) {
+
+        return streamService.stream(request);
+    }
+
+    @PostMapping(value = "/process/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> processTransactionsSse(
+            @Valid @RequestBody BulkTransactionRequest request) {
+
+        return streamService.stream(request)
+                .map(event -> ServerSentEvent.builder(event.getPayload()).event(event.getType()).build());
+    }
+
+    @PostMapping(value = "/process/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ProcessingEvent> processBackupNdjson(
+            @RequestPart("file") MultipartFile file,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String sessionId) {
+
+        return streamService.streamBackup(file, userId, sessionId);
+    }
+
+    @PostMapping(value = "/process/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> processBackupSse(
+            @RequestPart("file") MultipartFile file,
+            @RequestParam(required = false) String userId,
+            @RequestParam(required = false) String sessionId) {
+
+        return streamService.streamBackup(file, userId, sessionId)
+                .map(event -> ServerSentEvent.builder(event.getPayload()).event(event.getType()).build());
     }
 
     @PostMapping("/process-async")
-    public ResponseEntity<String> processTransactionsAsync(
+    public ResponseEntity<JobStatusResponse> processTransactionsAsync(
             @Valid @RequestBody BulkTransactionRequest request) {
 
-        CompletableFuture<ProcessingResponse> future = processingService.processTransactionsAsync(request);
+        JobStatusResponse job = jobService.submit(request);
+
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/v1/transactions/jobs/{sessionId}")
+                .buildAndExpand(job.getSessionId())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    @GetMapping("/jobs/{sessionId}")
+    public ResponseEntity<JobStatusResponse> jobStatus(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "FULL") ResponseView view,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+
+        JobStatusResponse job = jobService.getStatus(sessionId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        // The stored result is shared, each request gets its own projected copy
+        if (job.getResult() != null) {
+            job.setResult(ResponseProjection.project(job.getResult(), view, cursor, limit));
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    @DeleteMapping("/jobs/{sessionId}")
+    public ResponseEntity<JobStatusResponse> cancelJob(@PathVariable String sessionId) {
+        JobStatusResponse job = jobService.cancel(sessionId);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<TransactionPage> storedTransactions(
+            @PathVariable String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "100") int size) {
+
+        return ResponseEntity.ok(persistenceService.findByUser(userId, from, to, page, size));
+    }
+
+    @GetMapping("/users/{userId}/analytics")
+    public ResponseEntity<AnalyticsResponse> analytics(
+            @PathVariable String userId,
+            @RequestParam(defaultValue = "NONE") AnalyticsQuery.GroupBy groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String participant,
+            @RequestParam(required = false) String direction,
+            @RequestParam(required = false) Integer limit) {
+
+        AnalyticsQuery query = new AnalyticsQuery(groupBy, from, to, type, participant, direction, limit);
+        return ResponseEntity.ok(analyticsService.query(userId, query));
+    }
 
-        return ResponseEntity.accepted()
-                .body("Processing started. Session ID: " +
-                        (request.getSessionId() != null ? request.getSessionId() : "generated"));
+    @GetMapping("/cache/stats")
+    public ResponseEntity<CacheStats> cacheStats() {
+        return ResponseEntity.ok(extractionCache.getStats());
     }
 
     @GetMapping("/health")
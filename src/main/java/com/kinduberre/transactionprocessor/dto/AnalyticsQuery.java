@@ -0,0 +1,29 @@
+package com.kinduberre.transactionprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Filter, grouping and row limit of an analytics query. Unset filters match everything.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class AnalyticsQuery {
+
+    public enum GroupBy {
+        NONE, TYPE, PARTICIPANT, DIRECTION, MONTH, DAY
+    }
+
+    private GroupBy groupBy = GroupBy.NONE;
+    private LocalDate from;
+    private LocalDate to;
+    private String type;
+    private String participant;
+    // outgoing, incoming or other
+    private String direction;
+    private Integer limit;
+}
@@ -0,0 +1,18 @@
+package com.kinduberre.transactionprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class AnalyticsResponse {
+    private String userId;
+    private AnalyticsQuery.GroupBy groupBy;
+    private List<AnalyticsRow> rows;
+    private int transactionsScanned;
+    private long tookMicros;
+}
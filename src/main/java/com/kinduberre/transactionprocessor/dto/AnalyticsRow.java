@@ -0,0 +1,24 @@
+package com.kinduberre.transactionprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregates of one group. The balance is the M-PESA balance after the group's latest
+ * transaction that reported one.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class AnalyticsRow {
+    private String key;
+    private long count;
+    private BigDecimal totalAmount;
+    private BigDecimal totalFees;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    private BigDecimal closingBalance;
+}
@@ -0,0 +1,15 @@
+package com.kinduberre.transactionprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class CacheStats {
+    private int size;
+    private long hits;
+    private long misses;
+    private double hitRatio;
+}
@@ -0,0 +1,21 @@
+package com.kinduberre.transactionprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class JobStatusResponse {
+    private String sessionId;
+    private JobStatus status;
+    private int batchesCompleted;
+    private int batchesTotal;
+    private LocalDateTime submittedAt;
+    private LocalDateTime completedAt;
+    private String error;
+    private ProcessingResponse result;
+}
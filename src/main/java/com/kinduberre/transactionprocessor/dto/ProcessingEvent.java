@@ -0,0 +1,48 @@
+package com.kinduberre.transactionprocessor.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One element of a streamed processing result: a transaction, the final stats, or an
+ * error. Errors either describe messages that could not be extracted, or, as the last
+ * event, a failure that ended the stream early.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ProcessingEvent {
+    public static final String TRANSACTION = "transaction";
+    public static final String STATS = "stats";
+    public static final String ERROR = "error";
+
+    private String type;
+    private TransactionData transaction;
+    private ProcessingStats stats;
+    private ProcessingError error;
+
+    public static ProcessingEvent transaction(TransactionData transaction) {
+        return new ProcessingEvent(TRANSACTION, transaction, null, null);
+    }
+
+    public static ProcessingEvent stats(ProcessingStats stats) {
+        return new ProcessingEvent(STATS, null, stats, null);
+    }
+
+    public static ProcessingEvent error(ProcessingError error) {
+        return new ProcessingEvent(ERROR, null, null, error);
+    }
+
+    @JsonIgnore
+    public Object getPayload() {
+        return switch (type) {
+            case TRANSACTION -> transaction;
+            case STATS -> stats;
+            default -> error;
+        };
+    }
+}
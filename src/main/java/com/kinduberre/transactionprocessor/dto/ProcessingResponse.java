@@ -1,10 +1,12 @@
 package com.kinduberre.transactionprocessor.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @NoArgsConstructor
 @Data
@@ -13,10 +15,22 @@ public class ProcessingResponse {
     private LocalDateTime processedAt;
     private int totalMessages;
     private int successfullyProcessed;
+    // Left out of the JSON when a projected view drops them
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<TransactionData> transactions;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> transactionIds;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<ProcessingError> errors;
     private ProcessingStats stats;
 
+    // Cursor of the next page of transactions, when the result was paginated
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    // Number of messages handled by each extraction path, e.g. "template" or "llm"
+    private Map<String, Integer> extractionPaths;
+
     public ProcessingResponse(String sessionId, List<TransactionData> transactions) {
         this.sessionId = sessionId;
         this.processedAt = LocalDateTime.now();
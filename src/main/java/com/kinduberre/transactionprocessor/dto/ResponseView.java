@@ -0,0 +1,9 @@
+package com.kinduberre.transactionprocessor.dto;
+
+/**
+ * How much of a {@link ProcessingResponse} to return: every transaction, only their
+ * IDs, or only the stats and counts.
+ */
+public enum ResponseView {
+    FULL, IDS, STATS
+}
@@ -1,5 +1,7 @@
 package com.kinduberre.transactionprocessor.dto;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,6 +12,7 @@ import java.math.BigDecimal;
 @NoArgsConstructor
 @AllArgsConstructor
 @Data
+@JsonIgnoreProperties(ignoreUnknown = true)
 public class TransactionData {
     @JsonProperty("transaction_id")
     private String transactionId;
@@ -20,19 +23,24 @@ public class TransactionData {
     @JsonProperty("amount")
     private AmountData amount;
 
+    // Aliases accept the field names used in the extraction prompt's schema
     @JsonProperty("transaction_date")
+    @JsonAlias("date")
     private String transactionDate;
 
     @JsonProperty("transaction_time")
+    @JsonAlias("time")
     private String transactionTime;
 
     @JsonProperty("mpesa_balance")
+    @JsonAlias("balance_after")
     private AmountData mpesaBalance;
 
     @JsonProperty("transaction_cost")
     private AmountData transactionCost;
 
     @JsonProperty("daily_transaction_limit")
+    @JsonAlias("daily_limit_remaining")
     private DailyLimitData dailyTransactionLimit;
 
     private Object recipient;
@@ -42,6 +50,7 @@ public class TransactionData {
     @NoArgsConstructor
     @AllArgsConstructor
     @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
     public static class AmountData {
         private BigDecimal value;
         private String currency;
@@ -50,7 +59,9 @@ public class TransactionData {
     @NoArgsConstructor
     @AllArgsConstructor
     @Data
+    @JsonIgnoreProperties(ignoreUnknown = true)
     public static class DailyLimitData {
+        @JsonAlias("value")
         private BigDecimal remaining;
         private String currency;
     }
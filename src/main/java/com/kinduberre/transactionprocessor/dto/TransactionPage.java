@@ -0,0 +1,17 @@
+package com.kinduberre.transactionprocessor.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TransactionPage {
+    private List<TransactionData> transactions;
+    private int page;
+    private int size;
+    private boolean hasNext;
+}
@@ -0,0 +1,80 @@
+package com.kinduberre.transactionprocessor.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A stored extracted transaction. Rows are written by
+ * {@link com.kinduberre.transactionprocessor.repository.TransactionRecordRepositoryCustom#upsertAll}
+ * and are unique per M-PESA transaction code and user.
+ */
+@Entity
+@Table(name = "transactions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_transactions_transaction_user",
+                columnNames = {"transaction_id", "user_id"}),
+        indexes = @Index(name = "idx_transactions_user_date", columnList = "user_id, transaction_date"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class TransactionRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "transaction_id", nullable = false, length = 32)
+    private String transactionId;
+
+    @Column(name = "user_id", nullable = false, length = 128)
+    private String userId;
+
+    @Column(name = "session_id", length = 64)
+    private String sessionId;
+
+    @Column(name = "status", length = 32)
+    private String status;
+
+    @Column(name = "type", length = 64)
+    private String type;
+
+    @Column(name = "amount", precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "currency", length = 8)
+    private String currency;
+
+    @Column(name = "transaction_cost", precision = 15, scale = 2)
+    private BigDecimal transactionCost;
+
+    @Column(name = "mpesa_balance", precision = 15, scale = 2)
+    private BigDecimal mpesaBalance;
+
+    @Column(name = "transaction_date")
+    private LocalDate transactionDate;
+
+    @Column(name = "transaction_time", length = 16)
+    private String transactionTime;
+
+    @Column(name = "merchant")
+    private String merchant;
+
+    // Full TransactionData as JSON, so reads return exactly what was extracted
+    @Column(name = "details", columnDefinition = "text")
+    private String details;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
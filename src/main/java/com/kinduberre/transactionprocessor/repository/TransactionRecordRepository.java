@@ -0,0 +1,30 @@
+package com.kinduberre.transactionprocessor.repository;
+
+import com.kinduberre.transactionprocessor.entity.TransactionRecord;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TransactionRecordRepository extends JpaRepository<TransactionRecord, Long>,
+        TransactionRecordRepositoryCustom {
+
+    List<TransactionRecord> findByUserIdOrderByTransactionDateAsc(String userId);
+
+    // Paged reads also order by id so rows on the same date keep their place between pages
+
+    Slice<TransactionRecord> findByUserIdOrderByTransactionDateAscIdAsc(String userId, Pageable pageable);
+
+    Slice<TransactionRecord> findByUserIdAndTransactionDateBetweenOrderByTransactionDateAscIdAsc(
+            String userId, LocalDate from, LocalDate to, Pageable pageable);
+
+    Slice<TransactionRecord> findByUserIdAndTransactionDateGreaterThanEqualOrderByTransactionDateAscIdAsc(
+            String userId, LocalDate from, Pageable pageable);
+
+    Slice<TransactionRecord> findByUserIdAndTransactionDateLessThanEqualOrderByTransactionDateAscIdAsc(
+            String userId, LocalDate to, Pageable pageable);
+}
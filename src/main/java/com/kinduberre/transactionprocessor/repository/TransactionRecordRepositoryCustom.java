@@ -0,0 +1,16 @@
+package com.kinduberre.transactionprocessor.repository;
+
+import com.kinduberre.transactionprocessor.entity.TransactionRecord;
+
+import java.util.List;
+
+public interface TransactionRecordRepositoryCustom {
+
+    /**
+     * Inserts the records, or updates the existing row for the same transaction ID
+     * and user, using batched JDBC statements.
+     *
+     * @return the number of rows written
+     */
+    int upsertAll(List<TransactionRecord> records);
+}
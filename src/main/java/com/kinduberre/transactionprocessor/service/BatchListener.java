@@ -0,0 +1,60 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+import java.util.List;
+
+/**
+ * Callback for batches sent to the LLM. It is invoked on the thread that submitted the
+ * messages; with concurrent dispatch batches may be reported out of batch order.
+ */
+@FunctionalInterface
+public interface BatchListener {
+
+    BatchListener NONE = (messages, transactions) -> {
+    };
+
+    void onBatchCompleted(List<String> messages, List<TransactionData> transactions);
+
+    default void onBatchesPlanned(int totalBatches) {
+    }
+
+    default void onBatchFailed(List<String> messages, Throwable error) {
+    }
+
+    /**
+     * Called after {@link #onBatchCompleted} when some elements of the reply were rejected.
+     */
+    default void onBatchErrors(List<String> messages, List<ProcessingError> errors) {
+    }
+
+    default BatchListener andThen(BatchListener next) {
+        BatchListener first = this;
+        return new BatchListener() {
+            @Override
+            public void onBatchCompleted(List<String> messages, List<TransactionData> transactions) {
+                first.onBatchCompleted(messages, transactions);
+                next.onBatchCompleted(messages, transactions);
+            }
+
+            @Override
+            public void onBatchesPlanned(int totalBatches) {
+                first.onBatchesPlanned(totalBatches);
+                next.onBatchesPlanned(totalBatches);
+            }
+
+            @Override
+            public void onBatchFailed(List<String> messages, Throwable error) {
+                first.onBatchFailed(messages, error);
+                next.onBatchFailed(messages, error);
+            }
+
+            @Override
+            public void onBatchErrors(List<String> messages, List<ProcessingError> errors) {
+                first.onBatchErrors(messages, errors);
+                next.onBatchErrors(messages, errors);
+            }
+        };
+    }
+}
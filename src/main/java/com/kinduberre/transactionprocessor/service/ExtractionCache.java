@@ -0,0 +1,257 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.CacheStats;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of LLM extractions. Entries are keyed by a SHA-256 hash of
+ * the whitespace-normalized message, kept in a bounded LRU map with a TTL and
+ * optionally written through to a directory so they survive restarts. A periodic sweep
+ * deletes expired files and, past {@code extraction.cache.disk.max-entries}, the oldest
+ * ones. Entries are held as JSON, so every hit returns its own copy that callers are
+ * free to change.
+ */
+@Service
+public class ExtractionCache {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final Path diskDirectory;
+    private final int diskMaxEntries;
+
+    private final Map<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ExtractionCache(ObjectMapper objectMapper,
+                           @Value("${extraction.cache.enabled}") boolean enabled,
+                           @Value("${extraction.cache.max-entries}") int maxEntries,
+                           @Value("${extraction.cache.ttl}") Duration ttl,
+                           @Value("${extraction.cache.disk.enabled}") boolean diskEnabled,
+                           @Value("${extraction.cache.disk.directory}") String diskDirectory,
+                           @Value("${extraction.cache.disk.max-entries}") int diskMaxEntries) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.diskDirectory = diskEnabled ? Path.of(diskDirectory) : null;
+        this.diskMaxEntries = diskMaxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ExtractionCache.this.maxEntries;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the content key for a message: the SHA-256 of its trimmed text with
+     * whitespace runs collapsed, so re-exports that only differ in spacing share a key.
+     */
+    public static String keyOf(String message) {
+        String normalized = WHITESPACE.matcher(message.strip()).replaceAll(" ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return the cached extraction for the message key, or {@code null} on a miss
+     */
+    public TransactionData get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && now - entry.storedAt() > ttlMillis) {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null && diskDirectory != null) {
+            entry = readFromDisk(key, now);
+            if (entry != null) {
+                synchronized (entries) {
+                    entries.put(key, entry);
+                }
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        try {
+            TransactionData transaction = objectMapper.readValue(entry.json(), TransactionData.class);
+            hits.incrementAndGet();
+            return transaction;
+        } catch (IOException e) {
+            logger.warn("Could not read cached extraction {}: {}", key, e.getMessage());
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    public void put(String key, TransactionData transaction) {
+        if (!enabled || transaction == null) {
+            return;
+        }
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(transaction);
+        } catch (IOException e) {
+            logger.warn("Could not cache extraction {}: {}", key, e.getMessage());
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(json, System.currentTimeMillis()));
+        }
+        if (diskDirectory != null) {
+            writeToDisk(key, json);
+        }
+    }
+
+    public CacheStats getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long lookups = hitCount + missCount;
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new CacheStats(size, hitCount, missCount, lookups == 0 ? 0.0 : (double) hitCount / lookups);
+    }
+
+    /**
+     * Deletes expired entries from the disk tier, then the oldest entries beyond its
+     * size limit. Reads of an expired file delete it as well, the sweep catches the ones
+     * never asked for again.
+     */
+    @Scheduled(fixedDelayString = "${extraction.cache.disk.sweep-interval-ms}")
+    public void sweepDisk() {
+        if (!enabled || diskDirectory == null || !Files.isDirectory(diskDirectory)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<DiskFile> kept = new ArrayList<>();
+        int removed = 0;
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(diskDirectory, 2)) {
+            files = walk.filter(f -> f.toString().endsWith(".json")).toList();
+        } catch (IOException | UncheckedIOException e) {
+            logger.warn("Could not sweep the extraction cache directory: {}", e.getMessage());
+            return;
+        }
+        for (Path file : files) {
+            try {
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                if (now - modified > ttlMillis) {
+                    Files.deleteIfExists(file);
+                    removed++;
+                } else {
+                    kept.add(new DiskFile(file, modified));
+                }
+            } catch (IOException e) {
+                // Replaced or removed by a concurrent write or read, nothing to sweep
+            }
+        }
+        if (kept.size() > diskMaxEntries) {
+            kept.sort(Comparator.comparingLong(DiskFile::modified));
+            for (DiskFile file : kept.subList(0, kept.size() - diskMaxEntries)) {
+                try {
+                    Files.deleteIfExists(file.path());
+                    removed++;
+                } catch (IOException e) {
+                    logger.warn("Could not delete cached extraction {}: {}", file.path(), e.getMessage());
+                }
+            }
+        }
+        if (removed > 0) {
+            logger.info("Removed {} cached extractions from disk", removed);
+        }
+    }
+
+    private Entry readFromDisk(String key, long now) {
+        Path file = fileFor(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            long storedAt = Files.getLastModifiedTime(file).toMillis();
+            if (now - storedAt > ttlMillis) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return new Entry(Files.readAllBytes(file), storedAt);
+        } catch (IOException e) {
+            logger.warn("Could not read cached extraction {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] json) {
+        Path file = fileFor(key);
+        try {
+            Files.createDirectories(file.getParent());
+            // Write to a temporary file first so readers never see a partial entry
+            Path tmp = Files.createTempFile(file.getParent(), key, ".tmp");
+            Files.write(tmp, json);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not write cached extraction {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Path fileFor(String key) {
+        // Shard by the first byte of the hash to keep directories small
+        return diskDirectory.resolve(key.substring(0, 2)).resolve(key + ".json");
+    }
+
+    private record Entry(byte[] json, long storedAt) {
+    }
+
+    private record DiskFile(Path path, long modified) {
+    }
+}
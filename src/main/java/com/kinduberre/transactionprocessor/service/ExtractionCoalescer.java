@@ -0,0 +1,155 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single-flight registry of messages the LLM is currently extracting, keyed like the
+ * {@link ExtractionCache}. The first request to claim a message leads its extraction;
+ * concurrent requests with the same message attach to the leader's pending result
+ * instead of paying for another LLM call. Results are handed on as JSON, like the cache
+ * holds them, so every attached request gets its own copy to change.
+ */
+@Service
+public class ExtractionCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionCoalescer.class);
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    public ExtractionCoalescer(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Claims the messages for the caller. Messages nobody else is extracting are led by
+     * the caller, who must send them to the LLM with the returned claim as a listener
+     * and then {@link Claim#release() release} it.
+     */
+    public Claim claim(List<String> messages) {
+        Claim claim = new Claim();
+        for (String message : messages) {
+            String key = ExtractionCache.keyOf(message);
+            CompletableFuture<byte[]> pending = new CompletableFuture<>();
+            CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, pending);
+            if (existing == null) {
+                claim.led.put(key, pending);
+                claim.ledMessages.add(message);
+            } else {
+                claim.attached.put(message, existing);
+            }
+        }
+        return claim;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public final class Claim implements BatchListener {
+        private final Map<String, CompletableFuture<byte[]>> led = new LinkedHashMap<>();
+        private final List<String> ledMessages = new ArrayList<>();
+        private final Map<String, CompletableFuture<byte[]>> attached = new LinkedHashMap<>();
+
+        private Claim() {
+        }
+
+        public List<String> getLedMessages() {
+            return ledMessages;
+        }
+
+        public boolean hasAttached() {
+            return !attached.isEmpty();
+        }
+
+        @Override
+        public void onBatchCompleted(List<String> messages, List<TransactionData> transactions) {
+            // Like the cache, only results whose transaction code is in their message are handed on
+            MessageResults.attributeByCode(messages, transactions).forEach((index, transaction) -> {
+                CompletableFuture<byte[]> pending = led.get(ExtractionCache.keyOf(messages.get(index)));
+                if (pending != null && !pending.isDone()) {
+                    // Serialized now, before the leader's request goes on to change its instance
+                    pending.complete(toJson(transaction));
+                }
+            });
+        }
+
+        /**
+         * Ends the caller's lead. Messages that got no attributable result are completed
+         * empty, so attached requests extract them themselves. Completed entries stay
+         * registered until now so late arrivals can still attach to them; afterwards the
+         * cache serves them.
+         */
+        public void release() {
+            led.forEach((key, pending) -> {
+                pending.complete(null);
+                inFlight.remove(key, pending);
+            });
+        }
+
+        /**
+         * Waits up to {@code maxWait} in total for the leaders of the attached messages.
+         *
+         * @param unresolved receives the attached messages that came back without a result
+         *                   or were not done in time
+         * @return the results that were extracted by other requests, by message
+         */
+        public Map<String, TransactionData> awaitAttached(Duration maxWait, List<String> unresolved)
+                throws InterruptedException {
+            long deadline = System.nanoTime() + maxWait.toNanos();
+            Map<String, TransactionData> results = new LinkedHashMap<>();
+            for (Map.Entry<String, CompletableFuture<byte[]>> entry : attached.entrySet()) {
+                TransactionData transaction;
+                try {
+                    transaction = fromJson(entry.getValue().get(Math.max(0, deadline - System.nanoTime()),
+                            TimeUnit.NANOSECONDS));
+                } catch (ExecutionException | TimeoutException e) {
+                    transaction = null;
+                }
+                if (transaction != null) {
+                    results.put(entry.getKey(), transaction);
+                } else {
+                    unresolved.add(entry.getKey());
+                }
+            }
+            return results;
+        }
+    }
+
+    private byte[] toJson(TransactionData transaction) {
+        try {
+            return objectMapper.writeValueAsBytes(transaction);
+        } catch (IOException e) {
+            // Attached requests extract the message themselves
+            logger.warn("Could not hand on extraction of {}: {}", transaction.getTransactionId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private TransactionData fromJson(byte[] json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, TransactionData.class);
+        } catch (IOException e) {
+            logger.warn("Could not read handed on extraction: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer meters for the extraction pipeline. Stage durations share the
+ * {@code extraction.stage} timer, tagged by stage, so their histograms can be compared
+ * side by side; HTTP calls are timed separately per outcome.
+ */
+@Service
+public class ExtractionMetrics {
+
+    private final MeterRegistry registry;
+
+    private final Timer batchStage;
+    private final Timer promptStage;
+    private final Timer parseStage;
+    private final Timer statsStage;
+    private final Counter inputTokens;
+    private final Counter outputTokens;
+    private final Counter cachedInputTokens;
+    private final Counter droppedBatches;
+    private final AtomicInteger batchesInFlight = new AtomicInteger();
+
+    public ExtractionMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.batchStage = stageTimer("batch");
+        this.promptStage = stageTimer("prompt");
+        this.parseStage = stageTimer("parse");
+        this.statsStage = stageTimer("stats");
+        this.inputTokens = Counter.builder("llm.tokens").tag("type", "input")
+                .description("Tokens reported by the LLM provider").register(registry);
+        this.outputTokens = Counter.builder("llm.tokens").tag("type", "output")
+                .description("Tokens reported by the LLM provider").register(registry);
+        this.cachedInputTokens = Counter.builder("llm.tokens").tag("type", "cache_read")
+                .description("Tokens reported by the LLM provider").register(registry);
+        this.droppedBatches = Counter.builder("llm.batches.dropped")
+                .description("Batches given up on after retries").register(registry);
+        Gauge.builder("llm.batches.in.flight", batchesInFlight, AtomicInteger::get)
+                .description("Batches currently being extracted").register(registry);
+    }
+
+    public <T> T timeBatching(Supplier<T> stage) {
+        return batchStage.record(stage);
+    }
+
+    public <T> T timePrompt(Supplier<T> stage) {
+        return promptStage.record(stage);
+    }
+
+    public <T> T timeParse(Supplier<T> stage) {
+        return parseStage.record(stage);
+    }
+
+    public <T> T timeStats(Supplier<T> stage) {
+        return statsStage.record(stage);
+    }
+
+    public HttpSample startHttp() {
+        return new HttpSample(Timer.start(registry));
+    }
+
+    public void recordUsage(LLMParseResult result) {
+        inputTokens.increment(result.inputTokens());
+        outputTokens.increment(result.outputTokens());
+        cachedInputTokens.increment(result.cachedInputTokens());
+    }
+
+    public void recordParseErrors(List<ProcessingError> errors) {
+        for (ProcessingError error : errors) {
+            registry.counter("llm.parse.failures", "code", error.getErrorCode()).increment();
+        }
+    }
+
+    /**
+     * Counts the messages of one request by the path that resolved them.
+     */
+    public void recordExtractionPaths(Map<String, Integer> extractionPaths) {
+        extractionPaths.forEach((path, count) ->
+                registry.counter("extraction.messages", "path", path).increment(count));
+    }
+
+    /**
+     * Records one attempt at a batch on a model. The role is primary or hedge and the
+     * outcome won, lost or failed, so the win rate of a route is its won share; latency
+     * is recorded for every attempt that got a reply.
+     */
+    public void recordRouteAttempt(String model, String role, String outcome, Long replyNanos) {
+        registry.counter("llm.route.attempts", "model", model, "role", role, "outcome", outcome).increment();
+        if (replyNanos != null) {
+            Timer.builder("llm.route.latency")
+                    .description("Time until a batch attempt got a reply, per model and role")
+                    .tag("model", model)
+                    .tag("role", role)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(replyNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void batchStarted() {
+        batchesInFlight.incrementAndGet();
+    }
+
+    public void batchFinished() {
+        batchesInFlight.decrementAndGet();
+    }
+
+    public void batchDropped() {
+        droppedBatches.increment();
+    }
+
+    private Timer stageTimer(String stage) {
+        return Timer.builder("extraction.stage")
+                .description("Time spent in each extraction stage")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Timing of one HTTP attempt. Only the first outcome is recorded, since an attempt
+     * can be cancelled after it has already failed.
+     */
+    public final class HttpSample {
+        private final Timer.Sample sample;
+        private final AtomicBoolean stopped = new AtomicBoolean();
+
+        private HttpSample(Timer.Sample sample) {
+            this.sample = sample;
+        }
+
+        public void stop(String outcome) {
+            if (stopped.compareAndSet(false, true)) {
+                sample.stop(Timer.builder("llm.http")
+                        .description("LLM provider call latency, per attempt")
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(registry));
+            }
+        }
+    }
+}
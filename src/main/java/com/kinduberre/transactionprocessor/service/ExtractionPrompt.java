@@ -0,0 +1,212 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The extraction prompt, split into a fixed prefix with the instructions and schema,
+ * built once, and a per-batch section listing the messages. The prefix is identical
+ * for every call, so the provider can cache it. Providers only cache prefixes above a
+ * minimum length that differs by model, so with caching on the compact schema is
+ * followed by worked examples that take it past {@code llm.prompt.cache-min-tokens}.
+ * Models with a higher minimum get the schema alone, unmarked.
+ */
+@Service
+public class ExtractionPrompt {
+    private static final Logger logger = LoggerFactory.getLogger(ExtractionPrompt.class);
+
+    // Asks only for the fields TransactionData maps, using its JSON names
+    static final String COMPACT_SCHEMA = """
+            Extract each M-PESA SMS below into one JSON object. Use null for anything the message does not state.
+            Fields:
+            transaction_id: string
+            status: Confirmed|Pending|Failed
+            type: send_money|receive_money|merchant_payment|internal_transfer|bank_transfer|paybill|business_payment|bank_to_mpesa
+            amount, transaction_cost, mpesa_balance: {"value": number, "currency": "KSH"}
+            transaction_date: date as written in the message, D/M/YY
+            transaction_time: H:MM AM/PM
+            daily_transaction_limit: {"remaining": number, "currency": "KSH"}
+            recipient for outgoing, sender for incoming: {"type": individual|merchant|bank|business|service_provider|internal_account, "name", "phone", "account_number"}
+            merchant: name, for merchant payments
+            Respond with only a JSON array holding one object per message, in message order, no additional text.
+            """;
+
+    // Sent after the compact schema when the prefix is cached: an uncached prefix pays for
+    // these tokens on every call, a cached one reads them at a tenth of the price
+    static final String COMPACT_EXAMPLES = """
+
+            Examples, each message followed by the object it becomes:
+
+            Message: QGH7K2LM4P Confirmed. Ksh1,500.00 sent to JOHN KAMAU 0712345678 on 12/3/24 at 10:15 AM. New M-PESA balance is Ksh3,420.50. Transaction cost, Ksh23.00. Amount you can transact within the day is 498,500.00.
+            {"transaction_id": "QGH7K2LM4P", "status": "Confirmed", "type": "send_money", "amount": {"value": 1500.00, "currency": "KSH"}, "transaction_cost": {"value": 23.00, "currency": "KSH"}, "mpesa_balance": {"value": 3420.50, "currency": "KSH"}, "transaction_date": "12/3/24", "transaction_time": "10:15 AM", "daily_transaction_limit": {"remaining": 498500.00, "currency": "KSH"}, "recipient": {"type": "individual", "name": "JOHN KAMAU", "phone": "0712345678", "account_number": null}, "sender": null, "merchant": null}
+
+            Message: QHJ3N8PQ1R Confirmed.You have received Ksh2,000.00 from MARY WANJIKU 0722000111 on 14/3/24 at 6:40 PM New M-PESA balance is Ksh5,420.50.
+            {"transaction_id": "QHJ3N8PQ1R", "status": "Confirmed", "type": "receive_money", "amount": {"value": 2000.00, "currency": "KSH"}, "transaction_cost": null, "mpesa_balance": {"value": 5420.50, "currency": "KSH"}, "transaction_date": "14/3/24", "transaction_time": "6:40 PM", "daily_transaction_limit": null, "recipient": null, "sender": {"type": "individual", "name": "MARY WANJIKU", "phone": "0722000111", "account_number": null}, "merchant": null}
+
+            Message: QJK5R2ST7U Confirmed. Ksh845.00 paid to NAIVAS SUPERMARKET. on 15/3/24 at 1:05 PM.New M-PESA balance is Ksh4,575.50. Transaction cost, Ksh0.00. Amount you can transact within the day is 499,155.00.
+            {"transaction_id": "QJK5R2ST7U", "status": "Confirmed", "type": "merchant_payment", "amount": {"value": 845.00, "currency": "KSH"}, "transaction_cost": {"value": 0.00, "currency": "KSH"}, "mpesa_balance": {"value": 4575.50, "currency": "KSH"}, "transaction_date": "15/3/24", "transaction_time": "1:05 PM", "daily_transaction_limit": {"remaining": 499155.00, "currency": "KSH"}, "recipient": {"type": "merchant", "name": "NAIVAS SUPERMARKET", "phone": null, "account_number": null}, "sender": null, "merchant": "NAIVAS SUPERMARKET"}
+
+            Message: QKL9V4WX2Y Confirmed. Ksh3,200.00 sent to KPLC PREPAID for account 54401234567 on 18/3/24 at 8:22 AM New M-PESA balance is Ksh1,341.50. Transaction cost, Ksh34.00.Amount you can transact within the day is 496,800.00.
+            {"transaction_id": "QKL9V4WX2Y", "status": "Confirmed", "type": "paybill", "amount": {"value": 3200.00, "currency": "KSH"}, "transaction_cost": {"value": 34.00, "currency": "KSH"}, "mpesa_balance": {"value": 1341.50, "currency": "KSH"}, "transaction_date": "18/3/24", "transaction_time": "8:22 AM", "daily_transaction_limit": {"remaining": 496800.00, "currency": "KSH"}, "recipient": {"type": "service_provider", "name": "KPLC PREPAID", "phone": null, "account_number": "54401234567"}, "sender": null, "merchant": null}
+
+            Message: QLM2Z6AB8C Confirmed. You have received Ksh10,000.00 from EQUITY BANK on 20/3/24 at 9:00 AM. New M-PESA balance is Ksh11,341.50.
+            {"transaction_id": "QLM2Z6AB8C", "status": "Confirmed", "type": "bank_to_mpesa", "amount": {"value": 10000.00, "currency": "KSH"}, "transaction_cost": null, "mpesa_balance": {"value": 11341.50, "currency": "KSH"}, "transaction_date": "20/3/24", "transaction_time": "9:00 AM", "daily_transaction_limit": null, "recipient": null, "sender": {"type": "bank", "name": "EQUITY BANK", "phone": null, "account_number": null}, "merchant": null}
+
+            Message: QMN7D1EF5G Confirmed. Ksh5,000.00 transferred to M-Shwari account on 21/3/24 at 7:30 PM. M-PESA balance is Ksh6,341.50 .New M-Shwari saving account balance is Ksh25,000.00. Transaction cost Ksh.0.00
+            {"transaction_id": "QMN7D1EF5G", "status": "Confirmed", "type": "internal_transfer", "amount": {"value": 5000.00, "currency": "KSH"}, "transaction_cost": {"value": 0.00, "currency": "KSH"}, "mpesa_balance": {"value": 6341.50, "currency": "KSH"}, "transaction_date": "21/3/24", "transaction_time": "7:30 PM", "daily_transaction_limit": null, "recipient": {"type": "internal_account", "name": "M-Shwari", "phone": null, "account_number": null}, "sender": null, "merchant": null}
+
+            Message: QNP4H9JK3L Confirmed. Ksh4,500.00 sent to ABC HARDWARE SUPPLIES LTD on 22/3/24 at 11:45 AM. New M-PESA balance is Ksh1,788.50. Transaction cost, Ksh53.00. Amount you can transact within the day is 495,500.00.
+            {"transaction_id": "QNP4H9JK3L", "status": "Confirmed", "type": "business_payment", "amount": {"value": 4500.00, "currency": "KSH"}, "transaction_cost": {"value": 53.00, "currency": "KSH"}, "mpesa_balance": {"value": 1788.50, "currency": "KSH"}, "transaction_date": "22/3/24", "transaction_time": "11:45 AM", "daily_transaction_limit": {"remaining": 495500.00, "currency": "KSH"}, "recipient": {"type": "business", "name": "ABC HARDWARE SUPPLIES LTD", "phone": null, "account_number": null}, "sender": null, "merchant": null}
+            """;
+
+    static final String FULL_SCHEMA = "Please extract and structure the following M-PESA transaction messages into JSON format. "
+            + "Each transaction should include transaction_id, status, type, amount, date, time, balance, costs, and any recipient/sender information. "
+            + "Return the result as a JSON array of transaction objects. In this format:"
+            + "{\n"
+            + "  \"transaction_id\": \"string\",\n"
+            + "  \"type\": \"send_money | receive_money | merchant_payment | internal_transfer | bank_transfer | paybill | business_payment | bank_to_mpesa\",\n"
+            + "  \"status\": \"Confirmed | Pending | Failed\",\n"
+            + "  \"amount\": {\n"
+            + "    \"value\": 0.00,\n"
+            + "    \"currency\": \"KSH\"\n"
+            + "  },\n"
+            + "  \"participant\": {\n"
+            + "    \"type\": \"individual | merchant | bank | business | service_provider | internal_account\",\n"
+            + "    \"name\": \"string | null\",\n"
+            + "    \"account_number\": \"string | null\",\n"
+            + "    \"phone\": \"string | null\"\n"
+            + "  },\n"
+            + "  \"direction\": \"incoming | outgoing\",\n"
+            + "  \"date\": \"DD/MM/YY\",\n"
+            + "  \"time\": \"HH:MM AM/PM\",\n"
+            + "  \"balance_after\": {\n"
+            + "    \"value\": 0.00,\n"
+            + "    \"currency\": \"KSH\"\n"
+            + "  },\n"
+            + "  \"transaction_cost\": {\n"
+            + "    \"value\": 0.00,\n"
+            + "    \"currency\": \"KSH\"\n"
+            + "  },\n"
+            + "  \"daily_limit_remaining\": {\n"
+            + "    \"value\": 0.00,\n"
+            + "    \"currency\": \"KSH\"\n"
+            + "  },\n"
+            + "  \"additional_info\": {\n"
+            + "    \"service_type\": \"string | null\",\n"
+            + "    \"transaction_nature\": \"string | null\",\n"
+            + "    \"transfer_method\": \"string | null\",\n"
+            + "    \"mshwari_balance_after\": {\n"
+            + "      \"value\": 0.00,\n"
+            + "      \"currency\": \"KSH\"\n"
+            + "    },\n"
+            + "    \"notes\": \"string | null\",\n"
+            + "    \"app_link\": \"string | null\",\n"
+            + "    \"recommendation\": \"string | null\"\n"
+            + "  }\n"
+            + "}\n"
+            + "Please respond with only the JSON array, no additional text.";
+
+    // Prompt prose and JSON run to about four characters a token, so this errs on the short side
+    private static final int CHARS_PER_TOKEN = 4;
+
+    // Sent to models that do not cache the prefix
+    private final String plainPrefix;
+    // Sent, marked for caching, to models whose minimum it reaches
+    private final String cachedPrefix;
+    private final int cacheMinTokens;
+    // Model name fragment to the minimum of the models it names, in configured order
+    private final Map<String, Integer> cacheMinTokensByModel = new LinkedHashMap<>();
+    private final Map<String, Boolean> cachedByModel = new ConcurrentHashMap<>();
+
+    public ExtractionPrompt(@Value("${llm.prompt.schema}") String schema,
+                            @Value("${llm.prompt.cache-prefix}") boolean cachePrefix,
+                            @Value("${llm.prompt.cache-min-tokens}") int cacheMinTokens,
+                            @Value("${llm.prompt.cache-min-tokens-by-model}") String[] cacheMinTokensByModel) {
+        this.plainPrefix = switch (schema) {
+            case "compact" -> COMPACT_SCHEMA;
+            case "full" -> FULL_SCHEMA;
+            default -> throw new IllegalArgumentException("llm.prompt.schema must be compact or full, not " + schema);
+        };
+        this.cachedPrefix = !cachePrefix ? null
+                : "compact".equals(schema) ? COMPACT_SCHEMA + COMPACT_EXAMPLES : FULL_SCHEMA;
+        this.cacheMinTokens = cacheMinTokens;
+        for (String entry : cacheMinTokensByModel) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            if (equals < 1) {
+                throw new IllegalArgumentException(
+                        "llm.prompt.cache-min-tokens-by-model entries must be name=tokens, not " + entry);
+            }
+            this.cacheMinTokensByModel.put(entry.substring(0, equals).strip().toLowerCase(Locale.ROOT),
+                    Integer.parseInt(entry.substring(equals + 1).strip()));
+        }
+    }
+
+    /**
+     * The prefix sent to {@code model}: the cached form when {@link #isCachePrefix}
+     * holds for it, otherwise the schema alone, since the worked examples only pay off
+     * when they are read from the cache.
+     */
+    public String prefixFor(String model) {
+        return isCachePrefix(model) ? cachedPrefix : plainPrefix;
+    }
+
+    /**
+     * Whether the prefix sent to {@code model} should be marked for provider-side prompt
+     * caching. Only true when the cached prefix reaches the model's cache minimum.
+     */
+    public boolean isCachePrefix(String model) {
+        return cachedPrefix != null && cachedByModel.computeIfAbsent(model, this::reachesCacheMinimum);
+    }
+
+    private boolean reachesCacheMinimum(String model) {
+        int tokens = cachedPrefix.length() / CHARS_PER_TOKEN;
+        int minimum = cacheMinTokens(model);
+        // A prefix under the model's minimum would be marked for caching and never cached
+        if (tokens < minimum) {
+            logger.warn("The prompt prefix is about {} tokens, below the {} tokens {} caches; "
+                    + "sending it the schema uncached", tokens, minimum, model);
+            return false;
+        }
+        return true;
+    }
+
+    int cacheMinTokens(String model) {
+        String name = model.toLowerCase(Locale.ROOT);
+        for (Map.Entry<String, Integer> entry : cacheMinTokensByModel.entrySet()) {
+            if (name.contains(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return cacheMinTokens;
+    }
+
+    int estimatePrefixTokens(String model) {
+        return prefixFor(model).length() / CHARS_PER_TOKEN;
+    }
+
+    /**
+     * Lists the messages of one batch, numbered from 1.
+     */
+    public String messageSection(List<String> messages) {
+        int length = 0;
+        for (String message : messages) {
+            length += message.length() + 16;
+        }
+        StringBuilder section = new StringBuilder(length);
+        for (int i = 0; i < messages.size(); i++) {
+            section.append("Message ").append(i + 1).append(": ").append(messages.get(i)).append('\n');
+        }
+        return section.toString();
+    }
+}
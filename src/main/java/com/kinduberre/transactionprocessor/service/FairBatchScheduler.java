@@ -0,0 +1,178 @@
+package com.kinduberre.transactionprocessor.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Shares the LLM call slots between requests. Batches wait in a queue per user, users
+ * are served round-robin, and small requests go through an interactive lane that is
+ * preferred over the bulk lane by a fixed weight, so one large upload cannot hold up
+ * everyone else's small requests and bulk work still progresses.
+ */
+@Service
+public class FairBatchScheduler {
+
+    public enum Lane {
+        INTERACTIVE, BULK
+    }
+
+    /**
+     * Who a batch is scheduled for.
+     */
+    public record Owner(String userId, Lane lane) {
+    }
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private final int maxConcurrent;
+    private final int interactiveMaxMessages;
+    private final int interactiveWeight;
+
+    // Per lane, the waiting batches of each user; iteration order is the round-robin order
+    private final Map<Lane, LinkedHashMap<String, ArrayDeque<Waiter>>> queues = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> queued = new EnumMap<>(Lane.class);
+    private int running;
+    private int interactiveStreak;
+
+    public FairBatchScheduler(@Value("${llm.scheduler.max-concurrent}") int maxConcurrent,
+                              @Value("${llm.scheduler.interactive-max-messages}") int interactiveMaxMessages,
+                              @Value("${llm.scheduler.interactive-weight}") int interactiveWeight,
+                              MeterRegistry registry) {
+        this.maxConcurrent = maxConcurrent;
+        this.interactiveMaxMessages = interactiveMaxMessages;
+        this.interactiveWeight = interactiveWeight;
+        for (Lane lane : Lane.values()) {
+            queues.put(lane, new LinkedHashMap<>());
+            queued.put(lane, 0);
+            Gauge.builder("llm.scheduler.queued", this, scheduler -> scheduler.getQueued(lane))
+                    .description("Batches waiting for an LLM call slot")
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Picks the lane for a request by how many of its messages need the LLM.
+     */
+    public Owner ownerFor(String userId, int llmMessages) {
+        return new Owner(userId, llmMessages <= interactiveMaxMessages ? Lane.INTERACTIVE : Lane.BULK);
+    }
+
+    /**
+     * Runs the call once the owner's turn comes up and a slot is free. The slot is held
+     * until the call terminates or is cancelled; cancelling while queued gives up the turn.
+     */
+    public <T> Mono<T> schedule(Owner owner, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            Waiter waiter = new Waiter();
+            enqueue(owner, waiter);
+            return Mono.fromFuture(waiter.permit)
+                    .then(Mono.defer(call))
+                    .doFinally(signal -> release(waiter));
+        });
+    }
+
+    public synchronized int getQueued(Lane lane) {
+        return queued.get(lane);
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    private void enqueue(Owner owner, Waiter waiter) {
+        synchronized (this) {
+            String user = owner.userId() != null ? owner.userId() : ANONYMOUS;
+            waiter.lane = owner.lane();
+            queues.get(owner.lane()).computeIfAbsent(user, key -> new ArrayDeque<>()).add(waiter);
+            queued.merge(owner.lane(), 1, Integer::sum);
+        }
+        dispatch();
+    }
+
+    private void release(Waiter waiter) {
+        synchronized (this) {
+            if (waiter.granted) {
+                running--;
+            } else if (!waiter.cancelled) {
+                // Still queued: leave it for dispatch to skip
+                waiter.cancelled = true;
+                queued.merge(waiter.lane, -1, Integer::sum);
+            }
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Waiter next;
+            synchronized (this) {
+                if (running >= maxConcurrent) {
+                    return;
+                }
+                next = pollNext();
+                if (next == null) {
+                    return;
+                }
+                next.granted = true;
+                running++;
+            }
+            // Complete outside the lock, the call may start synchronously
+            next.permit.complete(null);
+        }
+    }
+
+    private Waiter pollNext() {
+        boolean interactiveWaiting = queued.get(Lane.INTERACTIVE) > 0;
+        boolean bulkWaiting = queued.get(Lane.BULK) > 0;
+        Lane lane;
+        if (interactiveWaiting && (!bulkWaiting || interactiveStreak < interactiveWeight)) {
+            lane = Lane.INTERACTIVE;
+            interactiveStreak++;
+        } else if (bulkWaiting) {
+            lane = Lane.BULK;
+            interactiveStreak = 0;
+        } else {
+            return null;
+        }
+
+        LinkedHashMap<String, ArrayDeque<Waiter>> users = queues.get(lane);
+        Iterator<Map.Entry<String, ArrayDeque<Waiter>>> iterator = users.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ArrayDeque<Waiter>> user = iterator.next();
+            Waiter waiter = user.getValue().poll();
+            while (waiter != null && waiter.cancelled) {
+                waiter = user.getValue().poll();
+            }
+            // The user goes to the back of the rotation, or leaves it when nothing is left
+            iterator.remove();
+            if (!user.getValue().isEmpty()) {
+                users.put(user.getKey(), user.getValue());
+            }
+            if (waiter != null) {
+                queued.merge(lane, -1, Integer::sum);
+                return waiter;
+            }
+            iterator = users.entrySet().iterator();
+        }
+        return null;
+    }
+
+    private static final class Waiter {
+        private final CompletableFuture<Void> permit = new CompletableFuture<>();
+        private Lane lane;
+        private boolean granted;
+        private boolean cancelled;
+    }
+}
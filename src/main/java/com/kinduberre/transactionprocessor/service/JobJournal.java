@@ -0,0 +1,326 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-ahead journal of background jobs. Each job gets an append-only file holding
+ * the accepted request followed by the result of every completed LLM batch, one JSON
+ * record per line. A single writer thread appends whatever is pending and fsyncs once
+ * per group, so concurrent jobs share the cost of a sync. The file is removed when the
+ * job ends; files left after a crash or restart describe jobs to resume.
+ */
+@Service
+public class JobJournal {
+    private static final Logger logger = LoggerFactory.getLogger(JobJournal.class);
+
+    private static final String SUFFIX = ".journal";
+    private static final String ACCEPTED = "accepted";
+    private static final String BATCH = "batch";
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    private final BlockingQueue<Write> pending = new LinkedBlockingQueue<>();
+    // Only touched by the writer thread
+    private final Map<Path, FileChannel> channels = new HashMap<>();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean closing;
+
+    public JobJournal(ObjectMapper objectMapper,
+                      @Value("${jobs.journal.enabled}") boolean enabled,
+                      @Value("${jobs.journal.directory}") String directory) {
+        this.objectMapper = objectMapper;
+        this.directory = enabled ? Path.of(directory) : null;
+        if (this.directory != null) {
+            writer = new Thread(this::writeLoop, "job-journal");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * A batch whose result was journaled before the job was interrupted.
+     */
+    public record CompletedBatch(List<String> messages, List<TransactionData> transactions) {
+    }
+
+    /**
+     * A job found in the journal at startup, with the batches it had completed.
+     */
+    public record JournaledJob(BulkTransactionRequest request, List<CompletedBatch> batches) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record Entry(String type, BulkTransactionRequest request, List<String> messages,
+                  List<TransactionData> transactions) {
+    }
+
+    /**
+     * Journals an accepted request and waits until it is on disk, so a job the client
+     * was told about survives a crash.
+     */
+    public void accepted(BulkTransactionRequest request) {
+        if (directory == null) {
+            return;
+        }
+        CompletableFuture<Void> synced = append(request.getSessionId(), new Entry(ACCEPTED, request, null, null));
+        try {
+            synced.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.warn("Could not journal job for session {}: {}", request.getSessionId(), e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Journals the result of every batch the job completes. Records are synced with the
+     * next group, the job does not wait for them.
+     */
+    public BatchListener recorder(String sessionId) {
+        if (directory == null) {
+            return BatchListener.NONE;
+        }
+        return (messages, transactions) -> append(sessionId, new Entry(BATCH, null, messages, transactions));
+    }
+
+    /**
+     * Removes the journal of a job that completed, failed or was cancelled.
+     */
+    public void finished(String sessionId) {
+        if (directory == null) {
+            return;
+        }
+        pending.add(new Write(fileFor(sessionId), null, new CompletableFuture<>()));
+    }
+
+    /**
+     * Reads the jobs left in the journal. A record cut short by a crash ends the job's
+     * history and is truncated away, so the resumed job can append after it.
+     */
+    public List<JournaledJob> recover() {
+        List<JournaledJob> jobs = new ArrayList<>();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return jobs;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                JournaledJob job = read(file);
+                if (job != null) {
+                    jobs.add(job);
+                } else {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read job journal {}: {}", directory, e.getMessage());
+        }
+        return jobs;
+    }
+
+    /**
+     * Whether the application is shutting down. Jobs failing then were interrupted by the
+     * shutdown and keep their journal, so they resume on the next start.
+     */
+    public boolean isClosing() {
+        return closing;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onShutdown() {
+        closing = true;
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private JournaledJob read(Path file) throws IOException {
+        BulkTransactionRequest request = null;
+        List<CompletedBatch> batches = new ArrayList<>();
+        long validLength = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            byte[] content = Files.readAllBytes(file);
+            int lineStart = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] != '\n') {
+                    continue;
+                }
+                Entry entry;
+                try {
+                    entry = objectMapper.readValue(content, lineStart, i - lineStart, Entry.class);
+                } catch (IOException e) {
+                    logger.warn("Ignoring unreadable record in job journal {}: {}", file, e.getMessage());
+                    break;
+                }
+                if (ACCEPTED.equals(entry.type())) {
+                    request = entry.request();
+                } else if (BATCH.equals(entry.type()) && request != null) {
+                    batches.add(new CompletedBatch(entry.messages(), entry.transactions()));
+                }
+                lineStart = i + 1;
+                validLength = lineStart;
+            }
+            if (validLength < channel.size()) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+        }
+        return request != null ? new JournaledJob(request, batches) : null;
+    }
+
+    private CompletableFuture<Void> append(String sessionId, Entry entry) {
+        CompletableFuture<Void> synced = new CompletableFuture<>();
+        if (!running) {
+            synced.completeExceptionally(new IOException("Job journal is closed"));
+            return synced;
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(entry);
+            byte[] line = new byte[json.length + 1];
+            System.arraycopy(json, 0, line, 0, json.length);
+            line[json.length] = '\n';
+            pending.add(new Write(fileFor(sessionId), line, synced));
+        } catch (IOException e) {
+            synced.completeExceptionally(e);
+        }
+        return synced;
+    }
+
+    private void writeLoop() {
+        List<Write> group = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                Write first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                pending.drainTo(group);
+                writeGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        for (FileChannel channel : channels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.warn("Could not close job journal: {}", e.getMessage());
+            }
+        }
+        channels.clear();
+    }
+
+    private void writeGroup(List<Write> group) {
+        Set<Path> written = new LinkedHashSet<>();
+        Map<Path, IOException> failed = new HashMap<>();
+        for (Write write : group) {
+            try {
+                if (write.line() == null) {
+                    FileChannel channel = channels.remove(write.file());
+                    if (channel != null) {
+                        channel.close();
+                    }
+                    written.remove(write.file());
+                    Files.deleteIfExists(write.file());
+                } else {
+                    FileChannel channel = channel(write.file());
+                    ByteBuffer buffer = ByteBuffer.wrap(write.line());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    written.add(write.file());
+                }
+            } catch (IOException e) {
+                failed.put(write.file(), e);
+            }
+        }
+        // One sync per file for the whole group
+        for (Path file : written) {
+            try {
+                channels.get(file).force(false);
+            } catch (IOException e) {
+                failed.put(file, e);
+            }
+        }
+        for (Write write : group) {
+            IOException error = failed.get(write.file());
+            if (error != null) {
+                logger.warn("Could not write job journal {}: {}", write.file(), error.getMessage());
+                write.synced().completeExceptionally(error);
+            } else {
+                write.synced().complete(null);
+            }
+        }
+    }
+
+    private FileChannel channel(Path file) throws IOException {
+        FileChannel channel = channels.get(file);
+        if (channel == null) {
+            Files.createDirectories(file.getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            channels.put(file, channel);
+        }
+        return channel;
+    }
+
+    private Path fileFor(String sessionId) {
+        // Session IDs come from clients, so they are hashed rather than used as file names
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return directory.resolve(HexFormat.of().formatHex(digest.digest(sessionId.getBytes(StandardCharsets.UTF_8)))
+                    + SUFFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record Write(Path file, byte[] line, CompletableFuture<Void> synced) {
+    }
+}
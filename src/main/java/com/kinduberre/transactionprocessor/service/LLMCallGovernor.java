@@ -0,0 +1,281 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Guards calls to the LLM provider. Each call first reserves capacity from two token
+ * buckets, one for requests and one for tokens per minute, and waits until the
+ * reservation is covered. Throttled (429) and server-side (5xx) failures are retried
+ * with jittered exponential backoff, and a Retry-After header pauses every caller, not
+ * just the one that was throttled. After too many consecutive provider failures the
+ * circuit opens and calls fail fast until a trial call succeeds again.
+ */
+@Service
+public class LLMCallGovernor {
+    private static final Logger logger = LoggerFactory.getLogger(LLMCallGovernor.class);
+
+    private static final double NANOS_PER_MINUTE = 60_000_000_000.0;
+
+    private final double requestCapacity;
+    private final double tokenCapacity;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    // Bucket balances may go negative: a negative balance is capacity already promised
+    // to callers that are still waiting for their turn
+    private double requestBalance;
+    private double tokenBalance;
+    private long refilledAt;
+    private long pausedUntil;
+
+    private CircuitState circuitState = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public LLMCallGovernor(@Value("${llm.governor.requests-per-minute}") int requestsPerMinute,
+                           @Value("${llm.governor.tokens-per-minute}") int tokensPerMinute,
+                           @Value("${llm.governor.retry.max-attempts}") int maxAttempts,
+                           @Value("${llm.governor.retry.initial-backoff}") Duration initialBackoff,
+                           @Value("${llm.governor.retry.max-backoff}") Duration maxBackoff,
+                           @Value("${llm.governor.circuit-breaker.failure-threshold}") int failureThreshold,
+                           @Value("${llm.governor.circuit-breaker.open-duration}") Duration openDuration) {
+        this.requestCapacity = requestsPerMinute;
+        this.tokenCapacity = tokensPerMinute;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.requestBalance = requestCapacity;
+        this.tokenBalance = tokenCapacity;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+    }
+
+    /**
+     * Runs the call under the rate limits, retry policy and circuit breaker. The call is
+     * resubscribed on every attempt and takes its turn in the limiter each time. An
+     * attempt cancelled while it waits for its turn gives its reservation back, and a
+     * cancelled trial lets the next call try instead.
+     *
+     * @param estimatedTokens input plus expected output tokens of one attempt
+     */
+    public <T> Mono<T> execute(int estimatedTokens, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+                    boolean trial = acquirePermission();
+                    Duration wait = reserve(estimatedTokens);
+                    AtomicBoolean sent = new AtomicBoolean();
+                    Mono<T> attempt = Mono.defer(() -> {
+                                sent.set(true);
+                                return call.get();
+                            })
+                            .doOnSuccess(value -> recordSuccess())
+                            .doOnError(this::recordFailure);
+                    // On the outer Mono so a cancel during the limiter wait is covered too
+                    return (wait.isZero() ? attempt : Mono.delay(wait).then(attempt))
+                            .doOnCancel(() -> {
+                                if (trial) {
+                                    releaseTrial();
+                                }
+                                if (!sent.get()) {
+                                    refund(estimatedTokens);
+                                }
+                            });
+                })
+                .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                    Throwable failure = signal.failure();
+                    long attempt = signal.totalRetries() + 1;
+                    if (attempt >= maxAttempts || !isRetryable(failure)) {
+                        return Mono.error(failure);
+                    }
+                    Duration delay = backoff(attempt);
+                    logger.warn("LLM call failed (attempt {} of {}): {}, retrying in {} ms",
+                            attempt, maxAttempts, failure.getMessage(), delay.toMillis());
+                    return Mono.delay(delay);
+                })));
+    }
+
+    /**
+     * Corrects the token bucket once the provider has reported the actual usage of a
+     * call that reserved {@code estimatedTokens}.
+     */
+    public synchronized void recordUsage(int estimatedTokens, int actualTokens) {
+        if (actualTokens > 0) {
+            tokenBalance = Math.min(tokenCapacity, tokenBalance + estimatedTokens - actualTokens);
+        }
+    }
+
+    public synchronized CircuitState getCircuitState() {
+        return circuitState;
+    }
+
+    /**
+     * Takes one request and the given tokens from the buckets.
+     *
+     * @return how long the caller has to wait before the reservation is covered
+     */
+    synchronized Duration reserve(int tokens) {
+        long now = System.nanoTime();
+        refill(now);
+        requestBalance -= 1;
+        // A single call larger than the bucket could otherwise never be covered
+        tokenBalance -= Math.min(tokens, tokenCapacity);
+
+        long waitNanos = Math.max(deficitNanos(requestBalance, requestCapacity),
+                deficitNanos(tokenBalance, tokenCapacity));
+        waitNanos = Math.max(waitNanos, pausedUntil - now);
+        return waitNanos > 0 ? Duration.ofNanos(waitNanos) : Duration.ZERO;
+    }
+
+    /**
+     * Returns a reservation whose call was never sent.
+     */
+    synchronized void refund(int tokens) {
+        requestBalance = Math.min(requestCapacity, requestBalance + 1);
+        tokenBalance = Math.min(tokenCapacity, tokenBalance + Math.min(tokens, tokenCapacity));
+    }
+
+    private void refill(long now) {
+        double elapsedMinutes = (now - refilledAt) / NANOS_PER_MINUTE;
+        requestBalance = Math.min(requestCapacity, requestBalance + elapsedMinutes * requestCapacity);
+        tokenBalance = Math.min(tokenCapacity, tokenBalance + elapsedMinutes * tokenCapacity);
+        refilledAt = now;
+    }
+
+    private static long deficitNanos(double balance, double perMinute) {
+        return balance >= 0 ? 0 : (long) (-balance / perMinute * NANOS_PER_MINUTE);
+    }
+
+    /**
+     * @return whether the caller holds the half-open circuit's single trial
+     */
+    private synchronized boolean acquirePermission() {
+        if (circuitState == CircuitState.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            circuitState = CircuitState.HALF_OPEN;
+        }
+        if (circuitState == CircuitState.OPEN || (circuitState == CircuitState.HALF_OPEN && trialInFlight)) {
+            throw new CircuitOpenException();
+        }
+        if (circuitState == CircuitState.HALF_OPEN) {
+            // Let one trial call through to find out whether the provider is back
+            trialInFlight = true;
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void recordSuccess() {
+        if (circuitState != CircuitState.CLOSED) {
+            logger.info("LLM provider recovered, closing circuit");
+        }
+        circuitState = CircuitState.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    private synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    private synchronized void recordFailure(Throwable failure) {
+        Duration retryAfter = retryAfter(failure);
+        if (retryAfter != null) {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + retryAfter.toNanos());
+        }
+        // Throttling and rejected requests say nothing about the provider being down
+        if (!isProviderFailure(failure)) {
+            trialInFlight = false;
+            return;
+        }
+        consecutiveFailures++;
+        if (circuitState == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (circuitState != CircuitState.OPEN) {
+                logger.error("LLM provider failed {} times in a row, opening circuit for {} ms",
+                        consecutiveFailures, openNanos / 1_000_000);
+            }
+            circuitState = CircuitState.OPEN;
+            openedAt = System.nanoTime();
+        }
+        trialInFlight = false;
+    }
+
+    private Duration backoff(long attempt) {
+        long base = initialBackoff.toMillis() << Math.min(attempt - 1, 20);
+        long capped = Math.min(base, maxBackoff.toMillis());
+        // Equal jitter keeps at least half the delay while spreading out retries
+        return Duration.ofMillis(capped / 2 + ThreadLocalRandom.current().nextLong(capped / 2 + 1));
+    }
+
+    private static boolean isRetryable(Throwable failure) {
+        if (failure instanceof WebClientResponseException response) {
+            return response.getStatusCode().value() == HttpStatus.TOO_MANY_REQUESTS.value()
+                    || response.getStatusCode().is5xxServerError();
+        }
+        return failure instanceof WebClientRequestException;
+    }
+
+    private static boolean isProviderFailure(Throwable failure) {
+        if (failure instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return failure instanceof WebClientRequestException;
+    }
+
+    /**
+     * @return the delay requested by a Retry-After header in seconds or HTTP-date form,
+     * or {@code null} if there is none
+     */
+    static Duration retryAfter(Throwable failure) {
+        if (!(failure instanceof WebClientResponseException response)) {
+            return null;
+        }
+        String header = response.getHeaders().getFirst("Retry-After");
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(header.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            try {
+                Duration delay = Duration.between(ZonedDateTime.now(),
+                        ZonedDateTime.parse(header.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return delay.isNegative() ? Duration.ZERO : delay;
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Thrown instead of calling the provider while the circuit is open.
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException() {
+            super("LLM provider circuit is open, not sending request");
+        }
+    }
+}
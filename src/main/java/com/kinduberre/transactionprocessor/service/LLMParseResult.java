@@ -0,0 +1,30 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of parsing one LLM reply: the transactions that could be salvaged, the
+ * elements that were rejected, and the provider's stop reason and token usage.
+ * {@code cachedInputTokens} are prompt tokens read from the provider's prompt cache,
+ * which are not included in {@code inputTokens}.
+ */
+public record LLMParseResult(List<TransactionData> transactions, List<ProcessingError> errors,
+                             boolean truncated, int inputTokens, int outputTokens, int cachedInputTokens) {
+
+    /**
+     * Joins the results of two halves of a split batch, keeping message order.
+     */
+    public LLMParseResult concat(LLMParseResult other) {
+        List<TransactionData> joinedTransactions = new ArrayList<>(transactions);
+        joinedTransactions.addAll(other.transactions);
+        List<ProcessingError> joinedErrors = new ArrayList<>(errors);
+        joinedErrors.addAll(other.errors);
+        return new LLMParseResult(joinedTransactions, joinedErrors, truncated || other.truncated,
+                inputTokens + other.inputTokens, outputTokens + other.outputTokens,
+                cachedInputTokens + other.cachedInputTokens);
+    }
+}
@@ -0,0 +1,277 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser for LLM replies. The provider envelope (Anthropic Messages, with
+ * OpenAI-style {@code choices} accepted as a fallback) is walked token by token, and
+ * the transaction array inside the reply text is deserialized one element at a time.
+ * Valid elements are kept even when others are malformed or the array is cut off,
+ * and every rejected element is reported as a {@link ProcessingError}.
+ */
+@Service
+public class LLMResponseParser {
+
+    static final String PARSE_ERROR = "PARSE_ERROR";
+
+    private final ObjectMapper objectMapper;
+
+    public LLMResponseParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public LLMParseResult parse(String responseBody) {
+        Envelope envelope = new Envelope();
+        try (JsonParser parser = objectMapper.createParser(responseBody)) {
+            readEnvelope(parser, envelope);
+        } catch (IOException e) {
+            return failure(envelope, "MALFORMED_RESPONSE", "Unreadable LLM response: " + e.getMessage(),
+                    abbreviate(responseBody));
+        }
+
+        if (envelope.text.isEmpty()) {
+            return failure(envelope, "EMPTY_RESPONSE", "LLM response contained no text", abbreviate(responseBody));
+        }
+        return parseTransactions(envelope);
+    }
+
+    private void readEnvelope(JsonParser parser, Envelope envelope) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "content" -> readContent(parser, envelope);
+                case "stop_reason" -> envelope.stopReason = parser.getValueAsString();
+                case "usage" -> readUsage(parser, envelope);
+                case "choices" -> readChoices(parser, envelope);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readContent(JsonParser parser, Envelope envelope) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            envelope.text.append(parser.getText());
+            return;
+        }
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        // Anthropic content blocks: [{"type": "text", "text": "..."}, ...]
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String type = null;
+            String text = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("type".equals(field)) {
+                    type = parser.getValueAsString();
+                } else if ("text".equals(field)) {
+                    text = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (text != null && (type == null || "text".equals(type))) {
+                envelope.text.append(text);
+            }
+        }
+    }
+
+    private void readUsage(JsonParser parser, Envelope envelope) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "input_tokens", "prompt_tokens" -> envelope.inputTokens = parser.getValueAsInt();
+                case "output_tokens", "completion_tokens" -> envelope.outputTokens = parser.getValueAsInt();
+                case "cache_read_input_tokens" -> envelope.cachedInputTokens = parser.getValueAsInt();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readChoices(JsonParser parser, Envelope envelope) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+        // Only the first choice is used
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                switch (field) {
+                    case "text" -> envelope.text.append(parser.getValueAsString(""));
+                    case "message" -> readChoiceMessage(parser, envelope);
+                    case "finish_reason" -> envelope.stopReason = parser.getValueAsString();
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        JsonToken token = parser.currentToken();
+        while (token != JsonToken.END_ARRAY && token != null) {
+            token = parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    private void readChoiceMessage(JsonParser parser, Envelope envelope) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("content".equals(field)) {
+                readContent(parser, envelope);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private LLMParseResult parseTransactions(Envelope envelope) {
+        String text = envelope.text.toString();
+        List<TransactionData> transactions = new ArrayList<>();
+        List<ProcessingError> errors = new ArrayList<>();
+
+        // Skip any prose or code fence the model put before the array
+        char[] chars = text.toCharArray();
+        int start = locateJson(chars);
+        if (start < 0) {
+            errors.add(error("NO_JSON", "LLM reply contained no JSON", abbreviate(text)));
+            return result(envelope, transactions, errors);
+        }
+
+        try (JsonParser parser = objectMapper.createParser(chars, start, chars.length - start)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                readElement(parser, transactions, errors);
+            } else {
+                while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (token == null) {
+                        throw new JsonEOFException(parser, null, "Unterminated transaction array");
+                    }
+                    if (token == JsonToken.START_OBJECT) {
+                        readElement(parser, transactions, errors);
+                    } else {
+                        String raw = parser.getText();
+                        parser.skipChildren();
+                        errors.add(error("INVALID_ELEMENT", "Array element is not an object", raw));
+                    }
+                }
+            }
+        } catch (JsonEOFException e) {
+            errors.add(error("TRUNCATED_RESPONSE",
+                    "LLM reply ended after " + transactions.size() + " complete transactions", null));
+        } catch (IOException e) {
+            errors.add(error("MALFORMED_JSON", "Stopped reading LLM reply: " + e.getMessage(), null));
+        }
+        return result(envelope, transactions, errors);
+    }
+
+    /**
+     * The offset of the transaction array in the reply text, or failing that of a single
+     * transaction object, or -1. A bracket only counts when the tokens after it open an
+     * array of objects (or an object with fields), so brackets in the model's prose, such
+     * as "[1 of 2]" or "{see below}", are passed over.
+     */
+    private int locateJson(char[] chars) {
+        for (char open : new char[]{'[', '{'}) {
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == open && opensJson(chars, i)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private boolean opensJson(char[] chars, int offset) {
+        try (JsonParser parser = objectMapper.createParser(chars, offset, chars.length - offset)) {
+            JsonToken first = parser.nextToken();
+            JsonToken second = parser.nextToken();
+            return first == JsonToken.START_ARRAY
+                    ? second == JsonToken.START_OBJECT || second == JsonToken.END_ARRAY
+                    : second == JsonToken.FIELD_NAME;
+        } catch (JsonEOFException e) {
+            // A reply cut off right after the opening bracket is still the array
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void readElement(JsonParser parser, List<TransactionData> transactions, List<ProcessingError> errors)
+            throws IOException {
+        // Buffer the element as a tree first so a bad field cannot desynchronise the stream
+        JsonNode node = parser.readValueAsTree();
+        try {
+            TransactionData transaction = objectMapper.treeToValue(node, TransactionData.class);
+            if (transaction.getTransactionId() == null && transaction.getAmount() == null) {
+                errors.add(error("EMPTY_ELEMENT", "Element has neither transaction_id nor amount", node.toString()));
+            } else {
+                transactions.add(transaction);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            errors.add(error("INVALID_ELEMENT", "Element does not match the transaction schema", node.toString()));
+        }
+    }
+
+    private static LLMParseResult result(Envelope envelope, List<TransactionData> transactions,
+                                         List<ProcessingError> errors) {
+        return new LLMParseResult(transactions, errors, envelope.isTruncated(),
+                envelope.inputTokens, envelope.outputTokens, envelope.cachedInputTokens);
+    }
+
+    private static LLMParseResult failure(Envelope envelope, String code, String message, String original) {
+        return result(envelope, new ArrayList<>(), new ArrayList<>(List.of(error(code, message, original))));
+    }
+
+    private static ProcessingError error(String code, String message, String original) {
+        return new ProcessingError(message, original, PARSE_ERROR, code);
+    }
+
+    private static String abbreviate(String text) {
+        return text != null && text.length() > 500 ? text.substring(0, 500) + "..." : text;
+    }
+
+    private static final class Envelope {
+        private final StringBuilder text = new StringBuilder();
+        private String stopReason;
+        private int inputTokens;
+        private int outputTokens;
+        private int cachedInputTokens;
+
+        private boolean isTruncated() {
+            // Anthropic reports max_tokens, OpenAI-style providers finish_reason length
+            return "max_tokens".equals(stopReason) || "length".equals(stopReason);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses the model for each batch and when to hedge it. Small batches can be routed to
+ * a faster model, and a batch still unanswered after a high percentile of its model's
+ * recent latencies gets a duplicate request, to the same model or the fallback model.
+ */
+@Service
+public class LLMRouter {
+
+    static final int WINDOW_SIZE = 256;
+    static final int MIN_SAMPLES = 20;
+
+    private final String model;
+    private final String fallbackModel;
+    private final int fastMaxMessages;
+    private final boolean hedgingEnabled;
+    private final boolean hedgeToFallback;
+    private final double hedgePercentile;
+    private final Duration initialHedgeDelay;
+    private final Duration minHedgeDelay;
+
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    public LLMRouter(@Value("${llm.api.model}") String model,
+                     @Value("${llm.api.fallback-model}") String fallbackModel,
+                     @Value("${llm.routing.fast-max-messages}") int fastMaxMessages,
+                     @Value("${llm.hedging.enabled}") boolean hedgingEnabled,
+                     @Value("${llm.hedging.target}") String hedgeTarget,
+                     @Value("${llm.hedging.percentile}") double hedgePercentile,
+                     @Value("${llm.hedging.initial-delay}") Duration initialHedgeDelay,
+                     @Value("${llm.hedging.min-delay}") Duration minHedgeDelay) {
+        if (!"same".equals(hedgeTarget) && !"fallback".equals(hedgeTarget)) {
+            throw new IllegalArgumentException("llm.hedging.target must be same or fallback, not " + hedgeTarget);
+        }
+        this.model = model;
+        this.fallbackModel = fallbackModel == null || fallbackModel.isBlank() ? model : fallbackModel;
+        this.fastMaxMessages = fastMaxMessages;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgeToFallback = "fallback".equals(hedgeTarget);
+        this.hedgePercentile = hedgePercentile;
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.minHedgeDelay = minHedgeDelay;
+    }
+
+    /**
+     * The model a batch is sent to first.
+     */
+    public String modelFor(List<String> batch) {
+        return batch.size() <= fastMaxMessages ? fallbackModel : model;
+    }
+
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    /**
+     * The model the duplicate of a batch first sent to {@code primaryModel} goes to.
+     */
+    public String hedgeModelFor(String primaryModel) {
+        return hedgeToFallback ? fallbackModel : primaryModel;
+    }
+
+    /**
+     * How long to wait for {@code model} before hedging: the configured percentile of its
+     * recent successful calls, or the initial delay until enough calls have been seen.
+     */
+    public Duration hedgeDelay(String model) {
+        LatencyWindow window = latencies.get(model);
+        Long nanos = window != null ? window.percentile(hedgePercentile) : null;
+        if (nanos == null) {
+            return initialHedgeDelay;
+        }
+        Duration delay = Duration.ofNanos(nanos);
+        return delay.compareTo(minHedgeDelay) < 0 ? minHedgeDelay : delay;
+    }
+
+    public void recordLatency(String model, long nanos) {
+        latencies.computeIfAbsent(model, key -> new LatencyWindow()).add(nanos);
+    }
+
+    /**
+     * The latest {@link #WINDOW_SIZE} call durations of one model.
+     */
+    static final class LatencyWindow {
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int next;
+        private int size;
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized Long percentile(double percentile) {
+            if (size < MIN_SAMPLES) {
+                return null;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
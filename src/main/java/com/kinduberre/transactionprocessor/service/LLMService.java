@@ -1,8 +1,5 @@
 package com.kinduberre.transactionprocessor.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.kinduberre.transactionprocessor.dto.TransactionData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,21 +8,43 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 @Service
 public class LLMService {
     private static final Logger logger = LoggerFactory.getLogger(LLMService.class);
 
+    private static final String ANTHROPIC_VERSION = "2023-06-01";
+
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
+    private final LLMResponseParser responseParser;
+    private final TokenBudgetBatcher batcher;
+    private final LLMCallGovernor governor;
+    private final ExtractionMetrics metrics;
+    private final ExtractionPrompt prompt;
+    private final FairBatchScheduler scheduler;
+    private final LLMRouter router;
 
-    public LLMService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper) {
+    public LLMService(WebClient.Builder webClientBuilder, LLMResponseParser responseParser,
+                      TokenBudgetBatcher batcher, LLMCallGovernor governor, ExtractionMetrics metrics,
+                      ExtractionPrompt prompt, FairBatchScheduler scheduler, LLMRouter router) {
         this.webClient = webClientBuilder.build();
-        this.objectMapper = objectMapper;
+        this.responseParser = responseParser;
+        this.batcher = batcher;
+        this.governor = governor;
+        this.metrics = metrics;
+        this.prompt = prompt;
+        this.scheduler = scheduler;
+        this.router = router;
     }
 
     @Value("${llm.api.url}")
@@ -34,146 +53,270 @@ public class LLMService {
     @Value("${llm.api.key}")
     private String apiKey;
 
-    @Value("${llm.api.model}")
-    private String model;
-
     @Value("${llm.api.max-tokens}")
     private int maxTokens;
 
-    public List<TransactionData> processTransactionMessages(List<String> messages) {
-        List<TransactionData> allTransactions = new ArrayList<>();
+    @Value("${llm.api.log-bodies}")
+    private boolean logBodies;
+
+    @Value("${llm.batch.concurrent}")
+    private boolean concurrentBatches;
+
+    @Value("${llm.batch.max-in-flight}")
+    private int maxInFlightBatches;
+
+    /**
+     * Extracts transactions from the messages in batches sized to the token budget,
+     * queued for the owner's turn in the {@link FairBatchScheduler}. The listener is told
+     * the planned batch count and gets each batch's results as it completes or fails, in
+     * completion order. Interrupting the calling thread stops dispatching further batches.
+     */
+    public void streamTransactionMessages(List<String> messages, BatchListener listener,
+                                          FairBatchScheduler.Owner owner) {
+        List<List<String>> batches = metrics.timeBatching(() -> batcher.createBatches(messages));
+        listener.onBatchesPlanned(batches.size());
 
-        // Process messages in batches to avoid token limits
-        List<List<String>> batches = createBatches(messages, 10);
+        if (concurrentBatches) {
+            deliver(dispatchConcurrently(batches, owner), listener);
+        } else {
+            processBatchesSequentially(batches, listener, owner);
+        }
+    }
 
+    /**
+     * Keeps up to maxInFlightBatches batches of this request queued or running at once;
+     * the scheduler decides when each one gets a call slot. Outcomes are emitted as
+     * batches complete.
+     */
+    private Flux<BatchOutcome> dispatchConcurrently(List<List<String>> batches, FairBatchScheduler.Owner owner) {
+        Function<Integer, Mono<BatchOutcome>> call = i -> scheduler.schedule(owner, () -> callBatch(batches.get(i), owner))
+                .doOnSubscribe(subscription -> {
+                    logger.info("Processing batch {} of {}", i + 1, batches.size());
+                    metrics.batchStarted();
+                })
+                .doFinally(signal -> metrics.batchFinished())
+                .map(result -> new BatchOutcome(batches.get(i), result, null))
+                .onErrorResume(e -> {
+                    logger.error("Error processing batch {}: {}", i + 1, e.getMessage());
+                    metrics.batchDropped();
+                    // Continue with other batches
+                    return Mono.just(new BatchOutcome(batches.get(i), null, e));
+                });
+        return Flux.range(0, batches.size()).flatMap(call, maxInFlightBatches);
+    }
+
+    /**
+     * Hands the outcomes to the listener on the calling thread rather than the HTTP
+     * client's event loop. A listener that blocks, such as a stream waiting for a slow
+     * client, stops further batches from being dispatched instead of piling up results.
+     */
+    private void deliver(Flux<BatchOutcome> outcomes, BatchListener listener) {
+        try {
+            for (BatchOutcome outcome : outcomes.toIterable(1)) {
+                if (outcome.error() != null) {
+                    listener.onBatchFailed(outcome.batch(), outcome.error());
+                } else {
+                    notifyCompleted(listener, outcome.batch(), outcome.result());
+                }
+            }
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted() || e.getCause() instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Batch processing interrupted", e);
+            }
+            throw e;
+        }
+    }
+
+    private void processBatchesSequentially(List<List<String>> batches, BatchListener listener,
+                                            FairBatchScheduler.Owner owner) {
         for (int i = 0; i < batches.size(); i++) {
             List<String> batch = batches.get(i);
             logger.info("Processing batch {} of {}", i + 1, batches.size());
 
+            metrics.batchStarted();
             try {
-                List<TransactionData> batchResults = processBatch(batch);
-                allTransactions.addAll(batchResults);
+                LLMParseResult result = processBatch(batch, owner);
+                notifyCompleted(listener, batch, result);
             } catch (Exception e) {
+                // block() clears the interrupt flag, so look at the cause as well
+                if (Thread.currentThread().isInterrupted() || e.getCause() instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Batch processing interrupted", e);
+                }
                 logger.error("Error processing batch {}: {}", i + 1, e.getMessage());
+                metrics.batchDropped();
+                listener.onBatchFailed(batch, e);
                 // Continue with other batches
+            } finally {
+                metrics.batchFinished();
             }
         }
+    }
+
+    private record BatchOutcome(List<String> batch, LLMParseResult result, Throwable error) {
+    }
+
+    private void notifyCompleted(BatchListener listener, List<String> batch, LLMParseResult result) {
+        listener.onBatchCompleted(batch, result.transactions());
+        if (!result.errors().isEmpty()) {
+            metrics.recordParseErrors(result.errors());
+            listener.onBatchErrors(batch, result.errors());
+        }
+    }
 
-        return allTransactions;
+    private LLMParseResult processBatch(List<String> messages, FairBatchScheduler.Owner owner) {
+        return scheduler.schedule(owner, () -> callBatch(messages, owner)).block();
     }
 
-    private List<TransactionData> processBatch(List<String> messages) {
-        String prompt = buildPrompt(messages);
+    /**
+     * Extracts one batch. The caller already holds a scheduler slot for it; a hedged
+     * attempt queues for a slot of its own.
+     */
+    private Mono<LLMParseResult> callBatch(List<String> messages, FairBatchScheduler.Owner owner) {
+        // Mapped once here; the halves of a split batch fail with their original exception
+        return extract(messages, owner)
+                .onErrorMap(e -> {
+                    if (e instanceof LLMCallGovernor.CircuitOpenException) {
+                        return e;
+                    }
+                    if (e instanceof WebClientResponseException responseException) {
+                        logger.error("LLM API error: {} - {}", responseException.getStatusCode(),
+                                responseException.getResponseBodyAsString());
+                        return new RuntimeException("Failed to process transactions with LLM", e);
+                    }
+                    logger.error("Unexpected error calling LLM API", e);
+                    return new RuntimeException("Failed to process transactions", e);
+                });
+    }
+
+    private Mono<LLMParseResult> extract(List<String> messages, FairBatchScheduler.Owner owner) {
+        String messageSection = metrics.timePrompt(() -> prompt.messageSection(messages));
+        String primaryModel = router.modelFor(messages);
+
+        Mono<LLMParseResult> reply;
+        if (router.isHedgingEnabled()) {
+            // The first reply wins, even one without transactions, and the other attempt is
+            // cancelled. The hedge is only sent when the primary has not answered by then
+            AtomicBoolean decided = new AtomicBoolean();
+            String hedgeModel = router.hedgeModelFor(primaryModel);
+            Duration hedgeDelay = router.hedgeDelay(primaryModel);
+            reply = Mono.firstWithValue(
+                            attempt(messages, messageSection, primaryModel, "primary", decided),
+                            Mono.delay(hedgeDelay).then(Mono.defer(() -> {
+                                logger.info("No reply from {} after {} ms for a batch of {} messages, hedging to {}",
+                                        primaryModel, hedgeDelay.toMillis(), messages.size(), hedgeModel);
+                                // A second call in flight, so it waits for a slot like any other
+                                return scheduler.schedule(owner,
+                                        () -> attempt(messages, messageSection, hedgeModel, "hedge", decided));
+                            })))
+                    .onErrorResume(NoSuchElementException.class, e -> {
+                        List<Throwable> failures = e.getCause() != null
+                                ? Exceptions.unwrapMultiple(e.getCause()) : List.of(e);
+                        // Report the primary's failure rather than Reactor's "all sources failed"
+                        return Mono.error(failures.get(0));
+                    });
+        } else {
+            reply = attempt(messages, messageSection, primaryModel, "primary", null);
+        }
 
+        return reply.flatMap(result -> {
+            if (result.truncated() && messages.size() > 1) {
+                return splitAndRetry(messages, owner);
+            }
+            return Mono.just(result);
+        });
+    }
+
+    /**
+     * Sends one batch to one model. When the batch is hedged, {@code decided} is shared
+     * by its attempts to tell the winner from the loser. The latency recorded for the
+     * model covers the HTTP call that answered, not rate limit waits or earlier retries.
+     */
+    private Mono<LLMParseResult> attempt(List<String> messages, String messageSection, String model, String role,
+                                         AtomicBoolean decided) {
+        // Anthropic Messages API request: the fixed instructions go in the system prompt,
+        // marked for prompt caching when the model caches it, and only the messages vary per batch
+        String prefix = prompt.prefixFor(model);
+        Object system = prompt.isCachePrefix(model)
+                ? List.of(Map.of("type", "text", "text", prefix,
+                        "cache_control", Map.of("type", "ephemeral")))
+                : prefix;
         Map<String, Object> requestBody = Map.of(
                 "model", model,
-                "max_completion_tokens", maxTokens,
+                "max_tokens", maxTokens,
+                "system", system,
                 "messages", List.of(
-                        Map.of("role", "user", "content", prompt)
+                        Map.of("role", "user", "content", messageSection)
                 )
         );
 
-        try {
-            String response = webClient.post()
-                    .uri(apiUrl)
-                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
-                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            logger.info("LLM API response received successfully: {}", response);
-
-
-            return parseResponse(response);
-
-        } catch (WebClientResponseException e) {
-            logger.error("LLM API error: {} - {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw new RuntimeException("Failed to process transactions with LLM", e);
-        } catch (Exception e) {
-            logger.error("Unexpected error calling LLM API", e);
-            throw new RuntimeException("Failed to process transactions", e);
-        }
-    }
+        int estimatedTokens = TokenBudgetBatcher.estimateInputTokens(prefix)
+                + TokenBudgetBatcher.estimateInputTokens(messageSection)
+                + batcher.estimateOutputTokens(messages.size());
 
-    private String buildPrompt(List<String> messages) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("Please extract and structure the following M-PESA transaction messages into JSON format. ");
-        prompt.append("Each transaction should include transaction_id, status, type, amount, date, time, balance, costs, and any recipient/sender information. ");
-        prompt.append("Return the result as a JSON array of transaction objects. In this format:" +
-                "{\n" +
-                "  \"transaction_id\": \"string\",\n" +
-                "  \"type\": \"send_money | receive_money | merchant_payment | internal_transfer | bank_transfer | paybill | business_payment | bank_to_mpesa\",\n" +
-                "  \"status\": \"Confirmed | Pending | Failed\",\n" +
-                "  \"amount\": {\n" +
-                "    \"value\": 0.00,\n" +
-                "    \"currency\": \"KSH\"\n" +
-                "  },\n" +
-                "  \"participant\": {\n" +
-                "    \"type\": \"individual | merchant | bank | business | service_provider | internal_account\",\n" +
-                "    \"name\": \"string | null\",\n" +
-                "    \"account_number\": \"string | null\",\n" +
-                "    \"phone\": \"string | null\"\n" +
-                "  },\n" +
-                "  \"direction\": \"incoming | outgoing\",\n" +
-                "  \"date\": \"DD/MM/YY\",\n" +
-                "  \"time\": \"HH:MM AM/PM\",\n" +
-                "  \"balance_after\": {\n" +
-                "    \"value\": 0.00,\n" +
-                "    \"currency\": \"KSH\"\n" +
-                "  },\n" +
-                "  \"transaction_cost\": {\n" +
-                "    \"value\": 0.00,\n" +
-                "    \"currency\": \"KSH\"\n" +
-                "  },\n" +
-                "  \"daily_limit_remaining\": {\n" +
-                "    \"value\": 0.00,\n" +
-                "    \"currency\": \"KSH\"\n" +
-                "  },\n" +
-                "  \"additional_info\": {\n" +
-                "    \"service_type\": \"string | null\",\n" +
-                "    \"transaction_nature\": \"string | null\",\n" +
-                "    \"transfer_method\": \"string | null\",\n" +
-                "    \"mshwari_balance_after\": {\n" +
-                "      \"value\": 0.00,\n" +
-                "      \"currency\": \"KSH\"\n" +
-                "    },\n" +
-                "    \"notes\": \"string | null\",\n" +
-                "    \"app_link\": \"string | null\",\n" +
-                "    \"recommendation\": \"string | null\"\n" +
-                "  }\n" +
-                "}");
-        prompt.append("Here are the messages:\n\n");
-
-        for (int i = 0; i < messages.size(); i++) {
-            prompt.append(String.format("Message %d: %s\n", i + 1, messages.get(i)));
-        }
+        long[] start = new long[1];
+        AtomicBoolean recorded = new AtomicBoolean();
 
-        prompt.append("\nPlease respond with only the JSON array, no additional text.");
-
-        return prompt.toString();
+        // The governor rate limits, retries and circuit-breaks the raw HTTP call
+        return governor.execute(estimatedTokens, () -> {
+                    start[0] = System.nanoTime();
+                    ExtractionMetrics.HttpSample sample = metrics.startHttp();
+                    return webClient.post()
+                            .uri(apiUrl)
+                            .header("x-api-key", apiKey)
+                            .header("anthropic-version", ANTHROPIC_VERSION)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .bodyValue(requestBody)
+                            .retrieve()
+                            .bodyToMono(String.class)
+                            .doOnSuccess(response -> sample.stop("success"))
+                            .doOnError(e -> sample.stop("error"))
+                            .doOnCancel(() -> sample.stop("cancelled"));
+                })
+                .doOnNext(response -> {
+                    // Replies contain the users' transaction details, so they are only logged on request
+                    if (logBodies) {
+                        logger.info("LLM API response: {}", response);
+                    } else {
+                        logger.debug("LLM API response received ({} chars)", response.length());
+                    }
+                })
+                .map(response -> metrics.timeParse(() -> responseParser.parse(response)))
+                .doOnNext(result -> {
+                    metrics.recordUsage(result);
+                    governor.recordUsage(estimatedTokens, result.inputTokens() + result.outputTokens());
+                })
+                .flatMap(result -> {
+                    long elapsed = System.nanoTime() - start[0];
+                    router.recordLatency(model, elapsed);
+                    boolean won = decided == null || decided.compareAndSet(false, true);
+                    recordAttempt(recorded, model, role, won ? "won" : "lost", elapsed);
+                    return Mono.just(result);
+                })
+                .doOnError(e -> recordAttempt(recorded, model, role, "failed", null))
+                .doOnCancel(() -> recordAttempt(recorded, model, role, "lost", null));
     }
 
-    private List<TransactionData> parseResponse(String response) {
-        try {
-            // Extract JSON from the response (assuming it's wrapped in a response object)
-            Map<String, Object> responseMap = objectMapper.readValue(response, Map.class);
-            String content = (String) ((Map<String, Object>) ((List<?>) responseMap.get("choices")).get(0)).get("text");
-
-            // Parse the JSON array of transactions
-            return objectMapper.readValue(content, new TypeReference<List<TransactionData>>() {});
-
-        } catch (Exception e) {
-            logger.error("Error parsing LLM response: {}", e.getMessage());
-            return new ArrayList<>();
+    private void recordAttempt(AtomicBoolean recorded, String model, String role, String outcome, Long replyNanos) {
+        // An attempt can be cancelled after its reply was already counted
+        if (recorded.compareAndSet(false, true)) {
+            metrics.recordRouteAttempt(model, role, outcome, replyNanos);
         }
     }
 
-    private List<List<String>> createBatches(List<String> messages, int batchSize) {
-        List<List<String>> batches = new ArrayList<>();
-        for (int i = 0; i < messages.size(); i += batchSize) {
-            batches.add(messages.subList(i, Math.min(i + batchSize, messages.size())));
-        }
-        return batches;
+    /**
+     * Retries a batch whose reply hit the output token limit as two halves. The halves
+     * run one after the other in the scheduler slot the batch already holds, so a split
+     * never has more calls in flight than the batch it replaces. Their results are joined
+     * in message order.
+     */
+    private Mono<LLMParseResult> splitAndRetry(List<String> messages, FairBatchScheduler.Owner owner) {
+        int middle = messages.size() / 2;
+        logger.warn("LLM response truncated for a batch of {} messages, retrying as {} + {}",
+                messages.size(), middle, messages.size() - middle);
+
+        return extract(messages.subList(0, middle), owner)
+                .flatMap(first -> extract(messages.subList(middle, messages.size()), owner).map(first::concat));
     }
 }
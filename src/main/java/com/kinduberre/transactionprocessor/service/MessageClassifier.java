@@ -0,0 +1,85 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.regex.Pattern;
+
+/**
+ * Keyword pre-filter run before messages are sent to the LLM. Phone exports mix
+ * M-PESA confirmations with OTPs, promotions, Fuliza limit notices and failed
+ * transaction notices; those are labelled as non-transactions with the reason, so
+ * they do not take a place in a paid batch. Anything the rules are unsure about is
+ * left for the LLM.
+ */
+@Service
+public class MessageClassifier {
+
+    public enum Label {
+        TRANSACTION, NON_TRANSACTION, UNCERTAIN
+    }
+
+    /**
+     * The label of a message, with the reason code for non-transactions.
+     */
+    public record Classification(Label label, String reason) {
+
+        static final Classification TRANSACTION = new Classification(Label.TRANSACTION, null);
+        static final Classification UNCERTAIN = new Classification(Label.UNCERTAIN, null);
+
+        static Classification skip(String reason) {
+            return new Classification(Label.NON_TRANSACTION, reason);
+        }
+    }
+
+    public static final String FAILED_TRANSACTION = "FAILED_TRANSACTION";
+    public static final String OTP = "OTP";
+    public static final String FULIZA_NOTICE = "FULIZA_NOTICE";
+    public static final String PROMOTION = "PROMOTION";
+    public static final String NO_AMOUNT = "NO_AMOUNT";
+
+    // Confirmations start with the transaction code, 10 characters in current messages
+    private static final Pattern CONFIRMATION = Pattern.compile("^\\s*[A-Z0-9]{8,12}\\s+Confirmed");
+    private static final Pattern FAILED = keywords("failed", "insufficient funds", "do not have enough",
+            "not enough money", "was not successful", "unsuccessful", "could not be completed");
+    private static final Pattern ONE_TIME_CODE = keywords("\\botp\\b", "one time pin", "one-time pin",
+            "one time password", "verification code", "activation code", "is your .{0,20}code", "m-pesa pin");
+    private static final Pattern FULIZA = keywords("fuliza");
+    private static final Pattern PROMOTIONAL = keywords("dial \\*", "sms stop", "stop to \\d+", "\\boffers?\\b",
+            "\\bwin\\b", "promotion", "bonga points", "t&cs", "t&c apply", "opt out", "\\bclick\\b");
+    private static final Pattern AMOUNT = Pattern.compile("(?i)\\b(?:ksh|kes)\\.?\\s?[\\d,]+(?:\\.\\d{1,2})?");
+    private static final Pattern MOVEMENT = keywords("sent to", "received", "paid to", "withdraw", "bought",
+            "transferred", "deposit", "give ", "reversal", "airtime");
+
+    /**
+     * Labels one message. Rules are checked from the most to the least specific. A
+     * confirmation code outweighs anything else in the message, such as appended
+     * promotions or a reversal of a failed payment, since dropping a real transaction
+     * costs more than one extra message in a batch.
+     */
+    public Classification classify(String message) {
+        if (CONFIRMATION.matcher(message).find()) {
+            return Classification.TRANSACTION;
+        }
+        if (FAILED.matcher(message).find()) {
+            return Classification.skip(FAILED_TRANSACTION);
+        }
+        if (ONE_TIME_CODE.matcher(message).find()) {
+            return Classification.skip(OTP);
+        }
+        // Fuliza loans arrive as confirmations, the rest are limit and repayment reminders
+        if (FULIZA.matcher(message).find()) {
+            return Classification.skip(FULIZA_NOTICE);
+        }
+        if (PROMOTIONAL.matcher(message).find()) {
+            return Classification.skip(PROMOTION);
+        }
+        if (!AMOUNT.matcher(message).find()) {
+            return Classification.skip(NO_AMOUNT);
+        }
+        return MOVEMENT.matcher(message).find() ? Classification.TRANSACTION : Classification.UNCERTAIN;
+    }
+
+    private static Pattern keywords(String... keywords) {
+        return Pattern.compile("(?i)(?:" + String.join("|", keywords) + ")");
+    }
+}
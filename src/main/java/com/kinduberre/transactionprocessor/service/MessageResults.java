@@ -0,0 +1,242 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Results of one request, kept per message so the response lists transactions in the
+ * order of their messages, whichever path resolved each message and whenever its LLM
+ * batch completed. Repeats of a message share the slot of its first occurrence, which
+ * is extracted once and listed again for every repeat.
+ */
+final class MessageResults {
+
+    // Shorter IDs could match unrelated text; M-PESA codes are 10 characters
+    private static final int MIN_CODE_LENGTH = 6;
+
+    private final List<String> distinct = new ArrayList<>();
+    private final Map<String, Integer> slotOf = new LinkedHashMap<>();
+    private final List<List<TransactionData>> slots = new ArrayList<>();
+    private final List<Integer> occurrences = new ArrayList<>();
+    private final int[] slotByMessage;
+    private final List<TransactionData> unplaced = new ArrayList<>();
+
+    MessageResults(List<String> messages) {
+        slotByMessage = new int[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            Integer slot = slotOf.putIfAbsent(ExtractionCache.keyOf(messages.get(i)), slots.size());
+            if (slot == null) {
+                slot = slots.size();
+                distinct.add(messages.get(i));
+                slots.add(null);
+                occurrences.add(0);
+            }
+            occurrences.set(slot, occurrences.get(slot) + 1);
+            slotByMessage[i] = slot;
+        }
+    }
+
+    /**
+     * The first occurrence of every message, in input order.
+     */
+    List<String> distinct() {
+        return distinct;
+    }
+
+    int duplicates() {
+        return slotByMessage.length - distinct.size();
+    }
+
+    synchronized void put(String message, TransactionData transaction) {
+        place(message, List.of(transaction));
+    }
+
+    /**
+     * Places the results of one LLM batch, each on the message it belongs to.
+     */
+    synchronized void putBatch(List<String> messages, List<TransactionData> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        int[] owners = assignOwners(messages, transactions);
+        List<List<TransactionData>> byMessage = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            byMessage.add(new ArrayList<>());
+        }
+        for (int i = 0; i < owners.length; i++) {
+            byMessage.get(owners[i]).add(transactions.get(i));
+        }
+        for (int i = 0; i < messages.size(); i++) {
+            if (!byMessage.get(i).isEmpty()) {
+                place(messages.get(i), byMessage.get(i));
+            }
+        }
+    }
+
+    /**
+     * The results of one LLM batch with each result listed once for every occurrence of
+     * its message in the request, for callers that pass results on as they arrive.
+     * Results are attributed like in {@link #putBatch}.
+     */
+    List<TransactionData> withRepeats(List<String> messages, List<TransactionData> transactions) {
+        if (transactions.isEmpty()) {
+            return transactions;
+        }
+        int[] owners = assignOwners(messages, transactions);
+        List<TransactionData> repeated = new ArrayList<>(transactions.size());
+        for (int i = 0; i < owners.length; i++) {
+            Integer slot = slotOf.get(ExtractionCache.keyOf(messages.get(owners[i])));
+            int times = slot != null ? occurrences.get(slot) : 1;
+            for (int n = 0; n < times; n++) {
+                repeated.add(transactions.get(i));
+            }
+        }
+        return repeated;
+    }
+
+    /**
+     * Every result, in the order of the messages they were extracted from. The results
+     * of a repeated message are listed at each of its occurrences.
+     */
+    synchronized List<TransactionData> inOrder() {
+        List<TransactionData> ordered = new ArrayList<>();
+        for (int slot : slotByMessage) {
+            if (slots.get(slot) != null) {
+                ordered.addAll(slots.get(slot));
+            }
+        }
+        ordered.addAll(unplaced);
+        return ordered;
+    }
+
+    /**
+     * Every result once, in the order of the messages they were extracted from.
+     */
+    synchronized List<TransactionData> extracted() {
+        List<TransactionData> ordered = new ArrayList<>();
+        for (List<TransactionData> slot : slots) {
+            if (slot != null) {
+                ordered.addAll(slot);
+            }
+        }
+        ordered.addAll(unplaced);
+        return ordered;
+    }
+
+    private void place(String message, List<TransactionData> transactions) {
+        Integer slot = slotOf.get(ExtractionCache.keyOf(message));
+        if (slot == null) {
+            unplaced.addAll(transactions);
+            return;
+        }
+        if (slots.get(slot) == null) {
+            slots.set(slot, new ArrayList<>(transactions.size()));
+        }
+        slots.get(slot).addAll(transactions);
+    }
+
+    /**
+     * The results that can be attributed to a message with certainty: the message holds
+     * the transaction code of exactly one result, and no other message holds that code.
+     *
+     * @return results by message index
+     */
+    static Map<Integer, TransactionData> attributeByCode(List<String> messages, List<TransactionData> transactions) {
+        int[] owners = matchByCode(messages, transactions);
+        int[] matches = new int[messages.size()];
+        for (int owner : owners) {
+            if (owner >= 0) {
+                matches[owner]++;
+            }
+        }
+        Map<Integer, TransactionData> attributed = new LinkedHashMap<>();
+        for (int i = 0; i < owners.length; i++) {
+            if (owners[i] >= 0 && matches[owners[i]] == 1) {
+                attributed.put(owners[i], transactions.get(i));
+            }
+        }
+        return attributed;
+    }
+
+    /**
+     * For each transaction, the index of the message it belongs to: the message holding
+     * its transaction code, else paired by position with the messages left over when the
+     * counts agree, else the first message left without a result.
+     */
+    private static int[] assignOwners(List<String> messages, List<TransactionData> transactions) {
+        int[] owners = matchByCode(messages, transactions);
+        boolean[] covered = new boolean[messages.size()];
+        List<Integer> leftover = new ArrayList<>();
+        for (int i = 0; i < owners.length; i++) {
+            if (owners[i] >= 0) {
+                covered[owners[i]] = true;
+            } else {
+                leftover.add(i);
+            }
+        }
+        List<Integer> uncovered = new ArrayList<>();
+        for (int i = 0; i < covered.length; i++) {
+            if (!covered[i]) {
+                uncovered.add(i);
+            }
+        }
+        for (int i = 0; i < leftover.size(); i++) {
+            if (leftover.size() == uncovered.size()) {
+                owners[leftover.get(i)] = uncovered.get(i);
+            } else {
+                owners[leftover.get(i)] = uncovered.isEmpty() ? messages.size() - 1 : uncovered.get(0);
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * For each transaction, the index of the only message containing its transaction
+     * code, or -1 when no message or more than one does.
+     */
+    static int[] matchByCode(List<String> messages, List<TransactionData> transactions) {
+        List<String> texts = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            texts.add(message.toUpperCase(Locale.ROOT));
+        }
+        int[] owners = new int[transactions.size()];
+        for (int i = 0; i < transactions.size(); i++) {
+            owners[i] = -1;
+            String id = transactions.get(i).getTransactionId();
+            String code = id != null ? id.strip().toUpperCase(Locale.ROOT) : "";
+            if (code.length() < MIN_CODE_LENGTH) {
+                continue;
+            }
+            for (int m = 0; m < texts.size(); m++) {
+                if (containsCode(texts.get(m), code)) {
+                    if (owners[i] >= 0) {
+                        owners[i] = -1;
+                        break;
+                    }
+                    owners[i] = m;
+                }
+            }
+        }
+        return owners;
+    }
+
+    private static boolean containsCode(String text, String code) {
+        int from = 0;
+        int at;
+        while ((at = text.indexOf(code, from)) >= 0) {
+            int end = at + code.length();
+            boolean startsWord = at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1));
+            boolean endsWord = end == text.length() || !Character.isLetterOrDigit(text.charAt(end));
+            if (startsWord && endsWord) {
+                return true;
+            }
+            from = at + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,39 @@
+package com.kinduberre.transactionprocessor.service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Parses the transaction dates found in extracted data. M-PESA messages use
+ * {@code D/M/YY}; the LLM occasionally answers with four-digit years or ISO dates.
+ */
+public final class MpesaDates {
+
+    private static final DateTimeFormatter MPESA_SHORT = DateTimeFormatter.ofPattern("d/M/yy");
+    private static final DateTimeFormatter MPESA_LONG = DateTimeFormatter.ofPattern("d/M/yyyy");
+
+    private MpesaDates() {
+    }
+
+    /**
+     * @return the parsed date, or {@code null} when the value is missing or unrecognised
+     */
+    public static LocalDate parse(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String text = value.strip();
+        try {
+            if (text.indexOf('-') > 0) {
+                return LocalDate.parse(text);
+            }
+            int lastSlash = text.lastIndexOf('/');
+            return text.length() - lastSlash - 1 > 2
+                    ? LocalDate.parse(text, MPESA_LONG)
+                    : LocalDate.parse(text, MPESA_SHORT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
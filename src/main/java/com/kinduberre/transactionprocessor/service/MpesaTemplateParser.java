@@ -0,0 +1,161 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rule engine for the fixed M-PESA SMS templates. Messages that match one of the
+ * known templates are turned into {@link TransactionData} without an LLM call;
+ * everything else is left for {@link LLMService}.
+ */
+@Service
+public class MpesaTemplateParser {
+
+    private static final String CURRENCY = "KSH";
+
+    private static final String AMOUNT = "Ksh\\.?\\s?([\\d,]+\\.\\d{2})";
+    private static final String PHONE = "(\\+?\\d[\\d*]{8,12})";
+
+    private static final Pattern HEADER = Pattern.compile("^([A-Z0-9]{10}) Confirmed\\.?");
+    private static final Pattern DATE_TIME = Pattern.compile(
+            "on (\\d{1,2}/\\d{1,2}/\\d{2}) at (\\d{1,2}:\\d{2} ?[AP]M)");
+    private static final Pattern MPESA_BALANCE = Pattern.compile("M-PESA balance is " + AMOUNT);
+    private static final Pattern TRANSACTION_COST = Pattern.compile("Transaction cost,?\\s?" + AMOUNT);
+    private static final Pattern DAILY_LIMIT = Pattern.compile(
+            "Amount you can transact within the day is ([\\d,]+\\.\\d{2})");
+
+    // Order matters: the more specific templates share markers with the generic ones
+    private static final List<Template> TEMPLATES = List.of(
+            new Template("transferred to M-Shwari",
+                    Pattern.compile(AMOUNT + " transferred to M-Shwari account"),
+                    (m, t) -> {
+                        t.setType("internal_transfer");
+                        t.setRecipient(participant("internal_account", "M-Shwari", null, null));
+                    }),
+            new Template("transferred from M-Shwari",
+                    Pattern.compile(AMOUNT + " transferred from M-Shwari account"),
+                    (m, t) -> {
+                        t.setType("internal_transfer");
+                        t.setSender(participant("internal_account", "M-Shwari", null, null));
+                    }),
+            new Template(" for account ",
+                    Pattern.compile(AMOUNT + " sent to (.+?) for account (\\S+) on "),
+                    (m, t) -> {
+                        boolean bank = isBank(m.group(2));
+                        t.setType(bank ? "bank_transfer" : "paybill");
+                        t.setRecipient(participant(bank ? "bank" : "business", m.group(2), null, m.group(3)));
+                    }),
+            new Template(" sent to ",
+                    Pattern.compile(AMOUNT + " sent to (.+?) " + PHONE + "\\.? on "),
+                    (m, t) -> {
+                        t.setType("send_money");
+                        t.setRecipient(participant("individual", m.group(2), m.group(3), null));
+                    }),
+            new Template(" paid to ",
+                    Pattern.compile(AMOUNT + " paid to (.+?)\\.? on "),
+                    (m, t) -> {
+                        t.setType("merchant_payment");
+                        t.setMerchant(m.group(2));
+                        t.setRecipient(participant("merchant", m.group(2), null, null));
+                    }),
+            new Template("received ",
+                    Pattern.compile("received " + AMOUNT + " from (.+?)(?: " + PHONE + ")? on "),
+                    (m, t) -> {
+                        boolean bank = isBank(m.group(2));
+                        t.setType(bank ? "bank_to_mpesa" : "receive_money");
+                        t.setSender(participant(bank ? "bank" : "individual", m.group(2), m.group(3), null));
+                    })
+    );
+
+    /**
+     * Extracts a transaction from a message in one of the known templates.
+     *
+     * @return the extracted transaction, or {@code null} when no template matches
+     */
+    public TransactionData parse(String message) {
+        if (message == null) {
+            return null;
+        }
+        String text = message.strip();
+
+        Matcher header = HEADER.matcher(text);
+        if (!header.find()) {
+            return null;
+        }
+        Matcher dateTime = DATE_TIME.matcher(text);
+        if (!dateTime.find()) {
+            return null;
+        }
+
+        for (Template template : TEMPLATES) {
+            // Cheap literal check first so only one regex runs per message
+            if (!text.contains(template.marker())) {
+                continue;
+            }
+            Matcher matcher = template.pattern().matcher(text);
+            if (!matcher.find()) {
+                continue;
+            }
+
+            TransactionData transaction = new TransactionData();
+            transaction.setTransactionId(header.group(1));
+            transaction.setStatus("Confirmed");
+            transaction.setAmount(amount(matcher.group(1)));
+            transaction.setTransactionDate(dateTime.group(1));
+            transaction.setTransactionTime(dateTime.group(2));
+            transaction.setMpesaBalance(amount(find(MPESA_BALANCE, text)));
+            transaction.setTransactionCost(amount(find(TRANSACTION_COST, text)));
+
+            String dailyLimit = find(DAILY_LIMIT, text);
+            if (dailyLimit != null) {
+                transaction.setDailyTransactionLimit(
+                        new TransactionData.DailyLimitData(toBigDecimal(dailyLimit), CURRENCY));
+            }
+
+            template.filler().fill(matcher, transaction);
+            return transaction;
+        }
+        return null;
+    }
+
+    private static String find(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static TransactionData.AmountData amount(String value) {
+        return value != null ? new TransactionData.AmountData(toBigDecimal(value), CURRENCY) : null;
+    }
+
+    private static BigDecimal toBigDecimal(String value) {
+        return new BigDecimal(value.replace(",", ""));
+    }
+
+    private static boolean isBank(String name) {
+        return name.toUpperCase().contains("BANK");
+    }
+
+    private static Map<String, String> participant(String type, String name, String phone, String accountNumber) {
+        Map<String, String> participant = new LinkedHashMap<>();
+        participant.put("type", type);
+        participant.put("name", name != null ? name.strip() : null);
+        participant.put("phone", phone);
+        participant.put("account_number", accountNumber);
+        return participant;
+    }
+
+    @FunctionalInterface
+    private interface Filler {
+        void fill(Matcher matcher, TransactionData transaction);
+    }
+
+    private record Template(String marker, Pattern pattern, Filler filler) {
+    }
+}
@@ -0,0 +1,103 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.JobStatus;
+import com.kinduberre.transactionprocessor.dto.JobStatusResponse;
+import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * State of one asynchronous processing job. Tracks batch progress through the
+ * {@link BatchListener} callbacks and guards status transitions so a cancelled job
+ * is never reported as completed.
+ */
+public class ProcessingJob implements BatchListener {
+
+    private final String sessionId;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private final AtomicInteger batchesCompleted = new AtomicInteger();
+    private final AtomicInteger batchesTotal = new AtomicInteger();
+
+    private JobStatus status = JobStatus.QUEUED;
+    private LocalDateTime completedAt;
+    private String error;
+    private ProcessingResponse result;
+    private Future<?> future;
+
+    public ProcessingJob(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    @Override
+    public void onBatchesPlanned(int totalBatches) {
+        // Messages left over after coalescing are planned as a second round
+        batchesTotal.addAndGet(totalBatches);
+    }
+
+    @Override
+    public void onBatchCompleted(List<String> messages, List<TransactionData> transactions) {
+        batchesCompleted.incrementAndGet();
+    }
+
+    @Override
+    public void onBatchFailed(List<String> messages, Throwable error) {
+        batchesCompleted.incrementAndGet();
+    }
+
+    synchronized void attach(Future<?> future) {
+        this.future = future;
+    }
+
+    synchronized boolean start() {
+        if (status != JobStatus.QUEUED) {
+            return false;
+        }
+        status = JobStatus.RUNNING;
+        return true;
+    }
+
+    synchronized void complete(ProcessingResponse response) {
+        if (status == JobStatus.RUNNING) {
+            status = JobStatus.COMPLETED;
+            result = response;
+            completedAt = LocalDateTime.now();
+        }
+    }
+
+    synchronized void fail(String message) {
+        if (status == JobStatus.RUNNING) {
+            status = JobStatus.FAILED;
+            error = message;
+            completedAt = LocalDateTime.now();
+        }
+    }
+
+    synchronized boolean cancel() {
+        if (status.isTerminal()) {
+            return false;
+        }
+        status = JobStatus.CANCELLED;
+        completedAt = LocalDateTime.now();
+        if (future != null) {
+            future.cancel(true);
+        }
+        return true;
+    }
+
+    synchronized boolean isExpired(LocalDateTime cutoff) {
+        return status.isTerminal() && completedAt.isBefore(cutoff);
+    }
+
+    public synchronized JobStatusResponse toResponse() {
+        return new JobStatusResponse(sessionId, status, batchesCompleted.get(), batchesTotal.get(),
+                submittedAt, completedAt, error, result);
+    }
+}
@@ -0,0 +1,153 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.JobStatusResponse;
+import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs bulk requests in the background on the bounded job executor and keeps a
+ * registry of their state keyed by session ID until the result expires. Jobs are
+ * journaled while they run and resumed after a restart.
+ */
+@Service
+public class ProcessingJobService {
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingJobService.class);
+
+    private final TransactionProcessingService processingService;
+    private final AsyncTaskExecutor jobExecutor;
+    private final JobJournal journal;
+    private final Duration resultTtl;
+
+    private final Map<String, ProcessingJob> jobs = new ConcurrentHashMap<>();
+
+    public ProcessingJobService(TransactionProcessingService processingService,
+                                @Qualifier("jobExecutor") AsyncTaskExecutor jobExecutor,
+                                JobJournal journal,
+                                @Value("${jobs.result-ttl}") Duration resultTtl) {
+        this.processingService = processingService;
+        this.jobExecutor = jobExecutor;
+        this.journal = journal;
+        this.resultTtl = resultTtl;
+    }
+
+    public JobStatusResponse submit(BulkTransactionRequest request) {
+        String sessionId = request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString();
+        request.setSessionId(sessionId);
+
+        ProcessingJob job = new ProcessingJob(sessionId);
+        if (jobs.putIfAbsent(sessionId, job) != null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "A job already exists for session " + sessionId);
+        }
+
+        journal.accepted(request);
+        try {
+            job.attach(jobExecutor.submit(() -> run(job, request, List.of())));
+        } catch (TaskRejectedException e) {
+            jobs.remove(sessionId);
+            journal.finished(sessionId);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Job queue is full, retry later", e);
+        }
+
+        logger.info("Queued job for session {} with {} messages", sessionId, request.getMessages().size());
+        return job.toResponse();
+    }
+
+    /**
+     * Requeues the jobs a previous run left in the journal. Batches they had completed
+     * are reused, only the rest of each job is extracted again.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (JobJournal.JournaledJob journaled : journal.recover()) {
+            BulkTransactionRequest request = journaled.request();
+            ProcessingJob job = new ProcessingJob(request.getSessionId());
+            if (jobs.putIfAbsent(request.getSessionId(), job) != null) {
+                continue;
+            }
+            // Count the journaled batches so progress continues where it stopped
+            job.onBatchesPlanned(journaled.batches().size());
+            journaled.batches().forEach(batch -> job.onBatchCompleted(batch.messages(), batch.transactions()));
+            try {
+                job.attach(jobExecutor.submit(() -> run(job, request, journaled.batches())));
+            } catch (TaskRejectedException e) {
+                // Left in the journal for the next start
+                jobs.remove(request.getSessionId());
+                logger.warn("Job queue is full, could not resume job for session {}", request.getSessionId());
+                continue;
+            }
+            logger.info("Resuming job for session {} with {} of its batches already done",
+                    request.getSessionId(), journaled.batches().size());
+        }
+    }
+
+    /**
+     * @return the job state, or {@code null} when the session is unknown or its result expired
+     */
+    public JobStatusResponse getStatus(String sessionId) {
+        ProcessingJob job = jobs.get(sessionId);
+        return job != null ? job.toResponse() : null;
+    }
+
+    /**
+     * Cancels a queued or running job. A finished job has its result discarded instead.
+     *
+     * @return the final job state, or {@code null} when the session is unknown
+     */
+    public JobStatusResponse cancel(String sessionId) {
+        ProcessingJob job = jobs.get(sessionId);
+        if (job == null) {
+            return null;
+        }
+        if (job.cancel()) {
+            journal.finished(sessionId);
+            logger.info("Cancelled job for session {}", sessionId);
+        } else {
+            jobs.remove(sessionId);
+        }
+        return job.toResponse();
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.sweep-interval-ms}")
+    public void expireResults() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(resultTtl);
+        jobs.values().removeIf(job -> job.isExpired(cutoff));
+    }
+
+    private void run(ProcessingJob job, BulkTransactionRequest request, List<JobJournal.CompletedBatch> completed) {
+        if (!job.start()) {
+            return;
+        }
+        boolean succeeded = false;
+        try {
+            ProcessingResponse response = processingService.processTransactionsBulk(request,
+                    job.andThen(journal.recorder(job.getSessionId())), completed);
+            job.complete(response);
+            succeeded = true;
+        } catch (Exception e) {
+            // A cancelled job is already in its final state, fail() leaves it alone
+            job.fail(e.getMessage());
+        }
+        if (succeeded || !journal.isClosing()) {
+            journal.finished(job.getSessionId());
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
+import com.kinduberre.transactionprocessor.dto.ResponseView;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Trims a {@link ProcessingResponse} to the view a client asked for and pages through
+ * its transactions. The original response is left untouched, so a stored job result
+ * can be projected any number of times. Cursors are opaque to clients and hold the
+ * offset of the next transaction.
+ */
+public final class ResponseProjection {
+
+    private static final String CURSOR_PREFIX = "offset:";
+
+    private ResponseProjection() {
+    }
+
+    public static ProcessingResponse project(ProcessingResponse response, ResponseView view) {
+        return project(response, view, null, null);
+    }
+
+    /**
+     * @param cursor where to continue, from the previous page's {@code nextCursor}
+     * @param limit  the page size, or {@code null} for everything after the cursor
+     * @throws ResponseStatusException with 400 for a malformed cursor or limit
+     */
+    public static ProcessingResponse project(ProcessingResponse response, ResponseView view, String cursor,
+                                             Integer limit) {
+        if (view == ResponseView.FULL && cursor == null && limit == null) {
+            return response;
+        }
+        if (limit != null && limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1");
+        }
+
+        ProcessingResponse projected = new ProcessingResponse();
+        projected.setSessionId(response.getSessionId());
+        projected.setProcessedAt(response.getProcessedAt());
+        projected.setTotalMessages(response.getTotalMessages());
+        projected.setSuccessfullyProcessed(response.getSuccessfullyProcessed());
+        projected.setStats(response.getStats());
+        projected.setExtractionPaths(response.getExtractionPaths());
+        if (view == ResponseView.STATS) {
+            return projected;
+        }
+        projected.setErrors(response.getErrors());
+
+        List<TransactionData> transactions = response.getTransactions() != null ? response.getTransactions() : List.of();
+        int from = Math.min(decode(cursor), transactions.size());
+        int to = limit != null ? (int) Math.min((long) from + limit, transactions.size()) : transactions.size();
+        List<TransactionData> page = transactions.subList(from, to);
+        if (view == ResponseView.IDS) {
+            List<String> ids = new ArrayList<>(page.size());
+            for (TransactionData transaction : page) {
+                ids.add(transaction.getTransactionId());
+            }
+            projected.setTransactionIds(ids);
+        } else {
+            projected.setTransactions(new ArrayList<>(page));
+        }
+        if (to < transactions.size()) {
+            projected.setNextCursor(encode(to));
+        }
+        return projected;
+    }
+
+    static String encode(int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((CURSOR_PREFIX + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static int decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith(CURSOR_PREFIX)) {
+                int offset = Integer.parseInt(value.substring(CURSOR_PREFIX.length()));
+                if (offset >= 0) {
+                    return offset;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Falls through to the bad request below; NumberFormatException is one as well
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+    }
+}
@@ -0,0 +1,213 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads SMS backup exports one message at a time and passes on those sent by M-PESA.
+ * Android "SMS Backup &amp; Restore" XML is read with StAX and CSV exports with a
+ * small RFC 4180 reader, so only the current message is ever held in memory. CSV fields
+ * and records are capped in length, so an unterminated quote cannot pull the rest of
+ * the file into one field.
+ */
+@Service
+public class SmsBackupReader {
+
+    private enum Format {
+        XML, CSV
+    }
+
+    private static final Set<String> ADDRESS_COLUMNS = Set.of("address", "sender", "from", "number");
+    private static final Set<String> BODY_COLUMNS = Set.of("body", "message", "text", "content");
+
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^A-Za-z0-9]");
+
+    private final Set<String> senders;
+    private final int maxFieldLength;
+    private final int maxRecordLength;
+    private final XMLInputFactory xmlInputFactory;
+
+    public SmsBackupReader(@Value("${upload.mpesa-senders}") String[] senders,
+                           @Value("${upload.csv.max-field-length}") int maxFieldLength,
+                           @Value("${upload.csv.max-record-length}") int maxRecordLength) {
+        this.senders = Stream.of(senders).map(SmsBackupReader::normalizeSender).collect(Collectors.toSet());
+        this.maxFieldLength = maxFieldLength;
+        this.maxRecordLength = maxRecordLength;
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        // Backups are user supplied: no DTDs or external entities
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * Passes the body of every M-PESA message in the backup to {@code messages}, in file
+     * order. The format is taken from the file name, or sniffed from the content when
+     * the name does not tell.
+     *
+     * @throws IllegalArgumentException if the backup cannot be read as XML or CSV, or a CSV
+     *                                  field or record is longer than the configured limit
+     */
+    public void read(InputStream backup, String filename, Consumer<String> messages) throws IOException {
+        BufferedInputStream input = new BufferedInputStream(backup);
+        Format format = detectFormat(input, filename);
+        if (format == Format.XML) {
+            readXml(input, messages);
+        } else {
+            readCsv(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), messages);
+        }
+    }
+
+    private void readXml(InputStream input, Consumer<String> messages) throws IOException {
+        try {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(input);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "sms".equals(reader.getLocalName())) {
+                        String address = reader.getAttributeValue(null, "address");
+                        String body = reader.getAttributeValue(null, "body");
+                        if (isMpesa(address) && body != null && !body.isBlank()) {
+                            messages.accept(body);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Unreadable XML backup: " + e.getMessage(), e);
+        }
+    }
+
+    private void readCsv(Reader input, Consumer<String> messages) throws IOException {
+        List<String> header = readRecord(input);
+        if (header == null) {
+            return;
+        }
+        int addressColumn = -1;
+        int bodyColumn = -1;
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            if (addressColumn < 0 && ADDRESS_COLUMNS.contains(column)) {
+                addressColumn = i;
+            } else if (bodyColumn < 0 && BODY_COLUMNS.contains(column)) {
+                bodyColumn = i;
+            }
+        }
+        if (addressColumn < 0 || bodyColumn < 0) {
+            throw new IllegalArgumentException("CSV backup needs a sender column (" + ADDRESS_COLUMNS
+                    + ") and a message column (" + BODY_COLUMNS + ")");
+        }
+
+        List<String> record;
+        while ((record = readRecord(input)) != null) {
+            if (record.size() <= Math.max(addressColumn, bodyColumn)) {
+                continue;
+            }
+            String body = record.get(bodyColumn);
+            if (isMpesa(record.get(addressColumn)) && !body.isBlank()) {
+                messages.accept(body);
+            }
+        }
+    }
+
+    /**
+     * Reads one CSV record. Quoted fields may contain commas, doubled quotes and line
+     * breaks, which M-PESA messages exported from phones often do.
+     *
+     * @return the fields, or {@code null} at the end of the input
+     * @throws IllegalArgumentException if a field or the record exceeds its length limit
+     */
+    private List<String> readRecord(Reader input) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+        int length = 0;
+        int c;
+        while ((c = input.read()) != -1) {
+            any = true;
+            if (++length > maxRecordLength) {
+                throw new IllegalArgumentException("CSV record longer than " + maxRecordLength + " characters");
+            }
+            if (quoted) {
+                if (c == '"') {
+                    input.mark(1);
+                    if (input.read() == '"') {
+                        field.append('"');
+                    } else {
+                        input.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            if (field.length() > maxFieldLength) {
+                throw new IllegalArgumentException("CSV field longer than " + maxFieldLength + " characters");
+            }
+        }
+        if (!any) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private boolean isMpesa(String address) {
+        return address != null && senders.contains(normalizeSender(address));
+    }
+
+    private static String normalizeSender(String sender) {
+        // "MPESA", "M-PESA" and "mpesa " are the same sender
+        return NON_ALPHANUMERIC.matcher(sender).replaceAll("").toUpperCase(Locale.ROOT);
+    }
+
+    private static Format detectFormat(BufferedInputStream input, String filename) throws IOException {
+        String name = filename != null ? filename.toLowerCase(Locale.ROOT) : "";
+        if (name.endsWith(".xml")) {
+            return Format.XML;
+        }
+        if (name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        // Sniff the first character that is not whitespace or a byte order mark
+        input.mark(64);
+        int c;
+        int read = 0;
+        do {
+            c = input.read();
+            read++;
+        } while (c != -1 && read < 64 && (Character.isWhitespace(c) || c == 0xEF || c == 0xBB || c == 0xBF));
+        input.reset();
+        return c == '<' ? Format.XML : Format.CSV;
+    }
+}
@@ -0,0 +1,112 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingStats;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One-pass accumulator behind {@link ProcessingStats}. Totals are kept in integer
+ * cents and dates as parsed {@link LocalDate}s, so partial accumulators from separate
+ * batches or stream chunks can be merged without revisiting any transaction.
+ * Instances are not thread-safe; give each thread its own and merge them.
+ */
+public class StatsAccumulator {
+
+    // Both the legacy short names and the types the extraction prompt asks for
+    static final Set<String> OUTGOING_TYPES = Set.of(
+            "send", "payment", "send_money", "merchant_payment", "paybill", "business_payment", "bank_transfer");
+    static final Set<String> INCOMING_TYPES = Set.of(
+            "receive", "transfer", "receive_money", "bank_to_mpesa");
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("d/M/yy");
+
+    // Amounts are whatever the LLM returned; anything this large is a misread, not money
+    static final BigDecimal MAX_AMOUNT = BigDecimal.TEN.pow(13);
+
+    private final Map<String, Integer> typeCounts = new HashMap<>();
+    private long count;
+    private long sentCents;
+    private long receivedCents;
+    private long feesCents;
+    private LocalDate minDate;
+    private LocalDate maxDate;
+
+    public StatsAccumulator add(TransactionData transaction) {
+        count++;
+        String type = transaction.getType() != null ? transaction.getType() : "unknown";
+        typeCounts.merge(type, 1, Integer::sum);
+
+        long amount = transaction.getAmount() != null ? toCents(transaction.getAmount().getValue()) : 0;
+        if (OUTGOING_TYPES.contains(type)) {
+            sentCents += amount;
+        } else if (INCOMING_TYPES.contains(type)) {
+            receivedCents += amount;
+        }
+        if (transaction.getTransactionCost() != null) {
+            feesCents += toCents(transaction.getTransactionCost().getValue());
+        }
+
+        LocalDate date = MpesaDates.parse(transaction.getTransactionDate());
+        if (date != null) {
+            includeDate(date, date);
+        }
+        return this;
+    }
+
+    public StatsAccumulator merge(StatsAccumulator other) {
+        count += other.count;
+        other.typeCounts.forEach((type, n) -> typeCounts.merge(type, n, Integer::sum));
+        sentCents += other.sentCents;
+        receivedCents += other.receivedCents;
+        feesCents += other.feesCents;
+        if (other.minDate != null) {
+            includeDate(other.minDate, other.maxDate);
+        }
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public ProcessingStats toStats() {
+        ProcessingStats stats = new ProcessingStats();
+        stats.setTransactionTypes(new HashMap<>(typeCounts));
+        stats.setTotalSent(BigDecimal.valueOf(sentCents, 2));
+        stats.setTotalReceived(BigDecimal.valueOf(receivedCents, 2));
+        stats.setTotalFees(BigDecimal.valueOf(feesCents, 2));
+        if (minDate != null) {
+            stats.setDateRange(minDate.equals(maxDate)
+                    ? DATE_FORMAT.format(minDate)
+                    : DATE_FORMAT.format(minDate) + " to " + DATE_FORMAT.format(maxDate));
+        }
+        return stats;
+    }
+
+    private void includeDate(LocalDate from, LocalDate to) {
+        if (minDate == null || from.isBefore(minDate)) {
+            minDate = from;
+        }
+        if (maxDate == null || to.isAfter(maxDate)) {
+            maxDate = to;
+        }
+    }
+
+    /**
+     * @return the value in cents, or 0 for a missing value or one of at least
+     * {@link #MAX_AMOUNT} either way, so one bad row cannot fail the whole stats
+     */
+    static long toCents(BigDecimal value) {
+        if (value == null || value.abs().compareTo(MAX_AMOUNT) >= 0) {
+            return 0;
+        }
+        return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,84 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs messages into LLM batches by estimated token cost instead of a fixed count.
+ * A batch is closed as soon as the next message would exceed the input budget for
+ * the message section, the share of {@code llm.api.max-tokens} reserved for the
+ * reply, or the hard message cap.
+ */
+@Service
+public class TokenBudgetBatcher {
+
+    // SMS text is dense in digits, codes and upper-case names, which tokenize poorly
+    private static final double CHARS_PER_TOKEN = 3.0;
+
+    // "Message N: " prefix and trailing newline the prompt adds per message
+    private static final int PER_MESSAGE_OVERHEAD_TOKENS = 6;
+
+    private final int inputTokenBudget;
+    private final int outputTokenBudget;
+    private final int outputTokensPerMessage;
+    private final int maxMessagesPerBatch;
+
+    public TokenBudgetBatcher(@Value("${llm.batch.input-token-budget}") int inputTokenBudget,
+                              @Value("${llm.api.max-tokens}") int maxTokens,
+                              @Value("${llm.batch.output-headroom}") double outputHeadroom,
+                              @Value("${llm.batch.output-tokens-per-message}") int outputTokensPerMessage,
+                              @Value("${llm.batch.max-messages}") int maxMessagesPerBatch) {
+        this.inputTokenBudget = inputTokenBudget;
+        this.outputTokenBudget = (int) (maxTokens * outputHeadroom);
+        this.outputTokensPerMessage = outputTokensPerMessage;
+        this.maxMessagesPerBatch = maxMessagesPerBatch;
+    }
+
+    /**
+     * Splits the messages into consecutive batches. Every batch holds at least one
+     * message, even if that message alone is over budget. Batches are views of the
+     * input list.
+     */
+    public List<List<String>> createBatches(List<String> messages) {
+        List<List<String>> batches = new ArrayList<>();
+
+        int start = 0;
+        int inputTokens = 0;
+        int outputTokens = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            int messageInput = estimateInputTokens(messages.get(i));
+            int messageOutput = outputTokensPerMessage;
+
+            boolean full = i - start >= maxMessagesPerBatch
+                    || inputTokens + messageInput > inputTokenBudget
+                    || outputTokens + messageOutput > outputTokenBudget;
+            if (i > start && full) {
+                batches.add(messages.subList(start, i));
+                start = i;
+                inputTokens = 0;
+                outputTokens = 0;
+            }
+            inputTokens += messageInput;
+            outputTokens += messageOutput;
+        }
+        if (start < messages.size()) {
+            batches.add(messages.subList(start, messages.size()));
+        }
+        return batches;
+    }
+
+    /**
+     * @return the reply tokens expected for a batch of the given size, capped at the
+     * share of {@code llm.api.max-tokens} batches are packed to
+     */
+    public int estimateOutputTokens(int messageCount) {
+        return Math.min(messageCount * outputTokensPerMessage, outputTokenBudget);
+    }
+
+    public static int estimateInputTokens(String message) {
+        return (int) Math.ceil(message.length() / CHARS_PER_TOKEN) + PER_MESSAGE_OVERHEAD_TOKENS;
+    }
+}
@@ -0,0 +1,125 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.AnalyticsQuery;
+import com.kinduberre.transactionprocessor.dto.AnalyticsResponse;
+import com.kinduberre.transactionprocessor.dto.AnalyticsRow;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers dashboard queries, such as spend by participant, fees by month or balance
+ * over time, from an in-memory {@link TransactionColumns} store per user. A user's store
+ * is loaded from the database on first use and kept current as extractions are saved.
+ * The least recently queried users are dropped past {@code analytics.max-users}; users
+ * without any transactions are answered without taking a place.
+ */
+@Service
+public class TransactionAnalyticsService {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionAnalyticsService.class);
+
+    private final TransactionPersistenceService persistenceService;
+    private final int maxUsers;
+
+    private final Map<String, TransactionColumns> stores;
+    // Transactions indexed while their user's store is being loaded, guarded by stores
+    private final Map<String, List<TransactionData>> indexedWhileLoading = new HashMap<>();
+
+    public TransactionAnalyticsService(TransactionPersistenceService persistenceService,
+                                       @Value("${analytics.max-users}") int maxUsers) {
+        this.persistenceService = persistenceService;
+        this.maxUsers = maxUsers;
+        this.stores = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TransactionColumns> eldest) {
+                return size() > TransactionAnalyticsService.this.maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Adds newly extracted transactions to the user's store. With persistence enabled a
+     * user not loaded yet is skipped, the first query reads them from the database; a
+     * user being loaded gets them once the load is done. Transactions without a user are
+     * not indexed, like they are not stored.
+     */
+    public void index(String userId, List<TransactionData> transactions) {
+        if (userId == null || transactions.isEmpty()) {
+            return;
+        }
+        TransactionColumns store;
+        synchronized (stores) {
+            store = stores.get(userId);
+            List<TransactionData> loading = indexedWhileLoading.get(userId);
+            if (store == null && loading != null) {
+                loading.addAll(transactions);
+                return;
+            }
+            if (store == null && !persistenceService.isEnabled()) {
+                store = new TransactionColumns();
+                stores.put(userId, store);
+            }
+        }
+        if (store != null) {
+            transactions.forEach(store::add);
+        }
+    }
+
+    public AnalyticsResponse query(String userId, AnalyticsQuery query) {
+        long start = System.nanoTime();
+        TransactionColumns store = storeFor(userId);
+        List<AnalyticsRow> rows = store.query(query);
+        long tookMicros = (System.nanoTime() - start) / 1_000;
+        return new AnalyticsResponse(userId, query.getGroupBy(), rows, store.size(), tookMicros);
+    }
+
+    private TransactionColumns storeFor(String userId) {
+        synchronized (stores) {
+            TransactionColumns store = stores.get(userId);
+            if (store != null) {
+                return store;
+            }
+            // Without a database, index() has created a store for every user with data
+            if (!persistenceService.isEnabled()) {
+                return new TransactionColumns();
+            }
+            indexedWhileLoading.computeIfAbsent(userId, key -> new ArrayList<>());
+        }
+        // Load outside the lock; a concurrent load of the same user keeps the first store
+        TransactionColumns loaded = new TransactionColumns();
+        List<TransactionData> stored;
+        try {
+            stored = persistenceService.findAllByUser(userId);
+        } catch (RuntimeException e) {
+            synchronized (stores) {
+                indexedWhileLoading.remove(userId);
+            }
+            throw e;
+        }
+        stored.forEach(loaded::add);
+        logger.debug("Loaded {} stored transactions of user {} for analytics", stored.size(), userId);
+        synchronized (stores) {
+            TransactionColumns store = stores.get(userId);
+            if (store != null) {
+                return store;
+            }
+            // Saved after the load read the table, or newer than what it read
+            List<TransactionData> indexed = indexedWhileLoading.remove(userId);
+            if (indexed != null) {
+                indexed.forEach(loaded::add);
+            }
+            if (loaded.size() > 0) {
+                stores.put(userId, loaded);
+            }
+            return loaded;
+        }
+    }
+}
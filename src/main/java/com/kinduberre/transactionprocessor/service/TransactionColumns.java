@@ -0,0 +1,340 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.AnalyticsQuery;
+import com.kinduberre.transactionprocessor.dto.AnalyticsRow;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Column store of one user's transactions. Amounts are kept in cents in long arrays,
+ * dates as {@code yyyymmdd} ints and types and participants as codes into
+ * dictionaries, so a query is a single pass over primitive arrays that aggregates into
+ * arrays indexed by group. Time groups are indexed by the sorted distinct months or
+ * days present rather than by the span between the first and last date, so an outlier
+ * date costs one group. Rows are replaced when a transaction ID is added again.
+ * Instances are thread-safe.
+ */
+final class TransactionColumns {
+
+    static final long NO_VALUE = Long.MIN_VALUE;
+    static final int NO_DATE = 0;
+
+    private static final int OUTGOING = 0;
+    private static final int INCOMING = 1;
+    private static final int OTHER = 2;
+    private static final String[] DIRECTIONS = {"outgoing", "incoming", "other"};
+    private static final String UNKNOWN = "unknown";
+
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private final Dictionary types = new Dictionary();
+    private final Dictionary participants = new Dictionary();
+    // Direction of each type code
+    private int[] typeDirections = new int[16];
+
+    private long[] amounts = new long[64];
+    private long[] fees = new long[64];
+    private long[] balances = new long[64];
+    private int[] dates = new int[64];
+    private int[] minutes = new int[64];
+    private int[] typeCodes = new int[64];
+    private int[] participantCodes = new int[64];
+    private int size;
+    // Sorted distinct months (yyyymm) and days (yyyymmdd), built on first use after a change
+    private int[] monthKeys;
+    private int[] dayKeys;
+
+    synchronized void add(TransactionData transaction) {
+        Integer existing = transaction.getTransactionId() != null ? rowsById.get(transaction.getTransactionId()) : null;
+        int row = existing != null ? existing : size++;
+        if (existing == null) {
+            ensureCapacity(size);
+            if (transaction.getTransactionId() != null) {
+                rowsById.put(transaction.getTransactionId(), row);
+            }
+        }
+
+        amounts[row] = cents(transaction.getAmount());
+        fees[row] = cents(transaction.getTransactionCost());
+        balances[row] = cents(transaction.getMpesaBalance());
+        LocalDate date = MpesaDates.parse(transaction.getTransactionDate());
+        dates[row] = date != null ? encode(date) : NO_DATE;
+        monthKeys = null;
+        dayKeys = null;
+        minutes[row] = minuteOfDay(transaction.getTransactionTime());
+
+        String type = transaction.getType() != null ? transaction.getType() : UNKNOWN;
+        int typeCode = types.code(type);
+        if (typeCode >= typeDirections.length) {
+            typeDirections = Arrays.copyOf(typeDirections, typeDirections.length * 2);
+        }
+        typeDirections[typeCode] = StatsAccumulator.OUTGOING_TYPES.contains(type) ? OUTGOING
+                : StatsAccumulator.INCOMING_TYPES.contains(type) ? INCOMING : OTHER;
+        typeCodes[row] = typeCode;
+        participantCodes[row] = participants.code(participantOf(transaction));
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized List<AnalyticsRow> query(AnalyticsQuery query) {
+        // Filters on dictionary columns become code comparisons; an unknown value matches nothing
+        int typeFilter = query.getType() != null ? types.find(query.getType()) : -1;
+        int participantFilter = query.getParticipant() != null ? participants.find(normalize(query.getParticipant())) : -1;
+        int directionFilter = query.getDirection() != null
+                ? Arrays.asList(DIRECTIONS).indexOf(query.getDirection().toLowerCase(Locale.ROOT)) : -1;
+        if ((query.getType() != null && typeFilter < 0)
+                || (query.getParticipant() != null && participantFilter < 0)
+                || (query.getDirection() != null && directionFilter < 0)) {
+            return List.of();
+        }
+        int from = query.getFrom() != null ? encode(query.getFrom()) : Integer.MIN_VALUE;
+        int to = query.getTo() != null ? encode(query.getTo()) : Integer.MAX_VALUE;
+        boolean dateFiltered = query.getFrom() != null || query.getTo() != null;
+
+        AnalyticsQuery.GroupBy groupBy = query.getGroupBy() != null ? query.getGroupBy() : AnalyticsQuery.GroupBy.NONE;
+        int[] timeKeys = timeKeys(groupBy);
+        int groups = groupCount(groupBy, timeKeys);
+        // The last slot collects rows without a date when grouping by time
+        int undated = groups - 1;
+
+        long[] count = new long[groups];
+        long[] total = new long[groups];
+        long[] totalFees = new long[groups];
+        long[] min = new long[groups];
+        long[] max = new long[groups];
+        long[] closing = new long[groups];
+        long[] closingAt = new long[groups];
+        Arrays.fill(min, Long.MAX_VALUE);
+        Arrays.fill(max, Long.MIN_VALUE);
+        Arrays.fill(closingAt, Long.MIN_VALUE);
+
+        for (int row = 0; row < size; row++) {
+            int date = dates[row];
+            if (dateFiltered && (date == NO_DATE || date < from || date > to)) {
+                continue;
+            }
+            int typeCode = typeCodes[row];
+            if ((typeFilter >= 0 && typeCode != typeFilter)
+                    || (participantFilter >= 0 && participantCodes[row] != participantFilter)
+                    || (directionFilter >= 0 && typeDirections[typeCode] != directionFilter)) {
+                continue;
+            }
+
+            int group = switch (groupBy) {
+                case NONE -> 0;
+                case TYPE -> typeCode;
+                case PARTICIPANT -> participantCodes[row];
+                case DIRECTION -> typeDirections[typeCode];
+                case MONTH -> date == NO_DATE ? undated : Arrays.binarySearch(timeKeys, date / 100);
+                case DAY -> date == NO_DATE ? undated : Arrays.binarySearch(timeKeys, date);
+            };
+
+            count[group]++;
+            long amount = amounts[row];
+            if (amount != NO_VALUE) {
+                total[group] += amount;
+                min[group] = Math.min(min[group], amount);
+                max[group] = Math.max(max[group], amount);
+            }
+            if (fees[row] != NO_VALUE) {
+                totalFees[group] += fees[row];
+            }
+            if (balances[row] != NO_VALUE) {
+                // Later rows win ties, so equal timestamps keep arrival order
+                long at = (long) date * 1440 + minutes[row];
+                if (at >= closingAt[group]) {
+                    closingAt[group] = at;
+                    closing[group] = balances[row];
+                }
+            }
+        }
+
+        List<AnalyticsRow> rows = new ArrayList<>();
+        for (int group = 0; group < groups; group++) {
+            if (count[group] == 0) {
+                continue;
+            }
+            rows.add(new AnalyticsRow(groupName(groupBy, group, timeKeys, undated), count[group],
+                    BigDecimal.valueOf(total[group], 2), BigDecimal.valueOf(totalFees[group], 2),
+                    min[group] != Long.MAX_VALUE ? BigDecimal.valueOf(min[group], 2) : null,
+                    max[group] != Long.MIN_VALUE ? BigDecimal.valueOf(max[group], 2) : null,
+                    closingAt[group] != Long.MIN_VALUE ? BigDecimal.valueOf(closing[group], 2) : null));
+        }
+        // Time groups are already in calendar order, the others rank by amount
+        if (groupBy != AnalyticsQuery.GroupBy.MONTH && groupBy != AnalyticsQuery.GroupBy.DAY) {
+            rows.sort(Comparator.comparing(AnalyticsRow::getTotalAmount).reversed());
+        }
+        if (query.getLimit() != null && query.getLimit() >= 0 && rows.size() > query.getLimit()) {
+            return new ArrayList<>(rows.subList(0, query.getLimit()));
+        }
+        return rows;
+    }
+
+    /**
+     * @return the sorted distinct month or day keys of the dated rows, or {@code null}
+     *         when not grouping by time
+     */
+    private int[] timeKeys(AnalyticsQuery.GroupBy groupBy) {
+        if (groupBy == AnalyticsQuery.GroupBy.MONTH) {
+            if (monthKeys == null) {
+                monthKeys = distinctDates(100);
+            }
+            return monthKeys;
+        }
+        if (groupBy == AnalyticsQuery.GroupBy.DAY) {
+            if (dayKeys == null) {
+                dayKeys = distinctDates(1);
+            }
+            return dayKeys;
+        }
+        return null;
+    }
+
+    private int[] distinctDates(int divisor) {
+        int[] keys = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (dates[row] != NO_DATE) {
+                keys[count++] = dates[row] / divisor;
+            }
+        }
+        return Arrays.stream(keys, 0, count).sorted().distinct().toArray();
+    }
+
+    private int groupCount(AnalyticsQuery.GroupBy groupBy, int[] timeKeys) {
+        return switch (groupBy) {
+            case NONE -> 1;
+            case TYPE -> Math.max(1, types.size());
+            case PARTICIPANT -> Math.max(1, participants.size());
+            case DIRECTION -> DIRECTIONS.length;
+            // One more for the rows without a date
+            case MONTH, DAY -> timeKeys.length + 1;
+        };
+    }
+
+    private String groupName(AnalyticsQuery.GroupBy groupBy, int group, int[] timeKeys, int undated) {
+        return switch (groupBy) {
+            case NONE -> "all";
+            case TYPE -> types.value(group);
+            case PARTICIPANT -> participants.value(group);
+            case DIRECTION -> DIRECTIONS[group];
+            case MONTH -> group == undated ? UNKNOWN
+                    : String.format("%04d-%02d", timeKeys[group] / 100, timeKeys[group] % 100);
+            case DAY -> group == undated ? UNKNOWN
+                    : String.format("%04d-%02d-%02d", timeKeys[group] / 10_000, timeKeys[group] / 100 % 100,
+                    timeKeys[group] % 100);
+        };
+    }
+
+    private static int encode(LocalDate date) {
+        return date.getYear() * 10_000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= amounts.length) {
+            return;
+        }
+        int capacity = Math.max(rows, amounts.length * 2);
+        amounts = Arrays.copyOf(amounts, capacity);
+        fees = Arrays.copyOf(fees, capacity);
+        balances = Arrays.copyOf(balances, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        minutes = Arrays.copyOf(minutes, capacity);
+        typeCodes = Arrays.copyOf(typeCodes, capacity);
+        participantCodes = Arrays.copyOf(participantCodes, capacity);
+    }
+
+    private static long cents(TransactionData.AmountData amount) {
+        if (amount == null || amount.getValue() == null
+                || amount.getValue().abs().compareTo(StatsAccumulator.MAX_AMOUNT) >= 0) {
+            return NO_VALUE;
+        }
+        return StatsAccumulator.toCents(amount.getValue());
+    }
+
+    /**
+     * The counterparty: the merchant, else the recipient or sender name.
+     */
+    static String participantOf(TransactionData transaction) {
+        String name = transaction.getMerchant();
+        if (name == null) {
+            name = nameOf(transaction.getRecipient());
+        }
+        if (name == null) {
+            name = nameOf(transaction.getSender());
+        }
+        return name != null && !name.isBlank() ? normalize(name) : UNKNOWN;
+    }
+
+    private static String nameOf(Object participant) {
+        return participant instanceof Map<?, ?> map && map.get("name") instanceof String name ? name : null;
+    }
+
+    private static String normalize(String name) {
+        // "John Doe" from the LLM and "JOHN DOE" from the template are the same person
+        return name.strip().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * @return minutes since midnight of an {@code H:MM AM/PM} time, or 0 when unreadable
+     */
+    static int minuteOfDay(String time) {
+        if (time == null) {
+            return 0;
+        }
+        String text = time.strip().toUpperCase(Locale.ROOT);
+        int colon = text.indexOf(':');
+        if (colon < 1 || text.length() < colon + 3) {
+            return 0;
+        }
+        try {
+            int hour = Integer.parseInt(text.substring(0, colon).strip());
+            int minute = Integer.parseInt(text.substring(colon + 1, colon + 3));
+            if (text.endsWith("PM") && hour < 12) {
+                hour += 12;
+            } else if (text.endsWith("AM") && hour == 12) {
+                hour = 0;
+            }
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Maps the distinct values of a column to dense int codes.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int code(String value) {
+            return codes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        int find(String value) {
+            return codes.getOrDefault(value, -1);
+        }
+
+        String value(int code) {
+            return values.get(code);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
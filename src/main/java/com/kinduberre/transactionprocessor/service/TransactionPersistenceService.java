@@ -0,0 +1,205 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import com.kinduberre.transactionprocessor.dto.TransactionPage;
+import com.kinduberre.transactionprocessor.entity.TransactionRecord;
+import com.kinduberre.transactionprocessor.repository.TransactionRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores extracted transactions so reports can read them back instead of re-running
+ * extraction. Saving never fails the caller: a database problem is logged and the
+ * processing result is still returned. Results of requests without a user ID are not
+ * stored; they only live in the response or job of their session.
+ */
+@Service
+public class TransactionPersistenceService {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPersistenceService.class);
+
+    // Column sizes in schema.sql; one value over its column would fail the whole batch
+    static final int MAX_TRANSACTION_ID_LENGTH = 32;
+    static final int MAX_USER_ID_LENGTH = 128;
+    private static final int MAX_SESSION_ID_LENGTH = 64;
+    private static final int MAX_STATUS_LENGTH = 32;
+    private static final int MAX_TYPE_LENGTH = 64;
+    private static final int MAX_CURRENCY_LENGTH = 8;
+    private static final int MAX_TIME_LENGTH = 16;
+    private static final int MAX_MERCHANT_LENGTH = 255;
+    // NUMERIC(15, 2) holds 13 digits before the point
+    private static final BigDecimal MAX_AMOUNT = BigDecimal.TEN.pow(13);
+
+    private final TransactionRecordRepository repository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${persistence.enabled}")
+    private boolean enabled;
+
+    @Value("${persistence.max-page-size}")
+    private int maxPageSize;
+
+    public TransactionPersistenceService(TransactionRecordRepository repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void save(String userId, String sessionId, List<TransactionData> transactions) {
+        if (!enabled || transactions.isEmpty()) {
+            return;
+        }
+        // Stored under a shared owner, anonymous clients could overwrite and read each other's rows
+        if (userId == null) {
+            logger.debug("Not persisting {} transactions of session {} without a user ID",
+                    transactions.size(), sessionId);
+            return;
+        }
+        if (userId.length() > MAX_USER_ID_LENGTH) {
+            logger.warn("Not persisting transactions of session {}: user ID longer than {} characters",
+                    sessionId, MAX_USER_ID_LENGTH);
+            return;
+        }
+
+        // A multi-row upsert may not touch the same key twice, so keep the last occurrence
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, TransactionRecord> records = new LinkedHashMap<>();
+        int skipped = 0;
+        for (TransactionData transaction : transactions) {
+            // The ID is whatever the LLM returned, an unusable one must not sink the batch
+            if (!isStorableId(transaction.getTransactionId())) {
+                skipped++;
+                continue;
+            }
+            records.put(transaction.getTransactionId(), toRecord(userId, sessionId, transaction, now));
+        }
+        if (skipped > 0) {
+            logger.warn("Not persisting {} of {} transactions for session {}: transaction ID missing or longer "
+                    + "than {} characters", skipped, transactions.size(), sessionId, MAX_TRANSACTION_ID_LENGTH);
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+
+        try {
+            int written = repository.upsertAll(new ArrayList<>(records.values()));
+            logger.debug("Upserted {} transactions for user {} in session {}", written, userId, sessionId);
+        } catch (Exception e) {
+            logger.error("Failed to persist {} transactions for session {}: {}",
+                    records.size(), sessionId, e.getMessage());
+        }
+    }
+
+    static boolean isStorableId(String transactionId) {
+        return transactionId != null && !transactionId.isBlank()
+                && transactionId.length() <= MAX_TRANSACTION_ID_LENGTH;
+    }
+
+    /**
+     * One page of the user's stored transactions, oldest first. Either date bound may
+     * be left out.
+     *
+     * @throws ResponseStatusException with 400 for a negative page or a size outside
+     *                                 1..{@code persistence.max-page-size}
+     */
+    public TransactionPage findByUser(String userId, LocalDate from, LocalDate to, int page, int size) {
+        if (page < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "page must not be negative");
+        }
+        if (size < 1 || size > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be between 1 and " + maxPageSize);
+        }
+        Pageable pageable = PageRequest.of(page, size);
+        Slice<TransactionRecord> records;
+        if (from != null && to != null) {
+            records = repository.findByUserIdAndTransactionDateBetweenOrderByTransactionDateAscIdAsc(
+                    userId, from, to, pageable);
+        } else if (from != null) {
+            records = repository.findByUserIdAndTransactionDateGreaterThanEqualOrderByTransactionDateAscIdAsc(
+                    userId, from, pageable);
+        } else if (to != null) {
+            records = repository.findByUserIdAndTransactionDateLessThanEqualOrderByTransactionDateAscIdAsc(
+                    userId, to, pageable);
+        } else {
+            records = repository.findByUserIdOrderByTransactionDateAscIdAsc(userId, pageable);
+        }
+        return new TransactionPage(toTransactions(records.getContent()), page, size, records.hasNext());
+    }
+
+    /**
+     * Every stored transaction of the user, oldest first.
+     */
+    public List<TransactionData> findAllByUser(String userId) {
+        return toTransactions(repository.findByUserIdOrderByTransactionDateAsc(userId));
+    }
+
+    private List<TransactionData> toTransactions(List<TransactionRecord> records) {
+        List<TransactionData> transactions = new ArrayList<>(records.size());
+        for (TransactionRecord record : records) {
+            try {
+                transactions.add(objectMapper.readValue(record.getDetails(), TransactionData.class));
+            } catch (JsonProcessingException e) {
+                logger.warn("Skipping unreadable stored transaction {}: {}", record.getTransactionId(), e.getMessage());
+            }
+        }
+        return transactions;
+    }
+
+    private TransactionRecord toRecord(String userId, String sessionId, TransactionData transaction,
+                                       LocalDateTime now) {
+        TransactionRecord record = new TransactionRecord();
+        record.setTransactionId(transaction.getTransactionId());
+        record.setUserId(userId);
+        // The full values stay in details, the columns only serve queries
+        record.setSessionId(fit(sessionId, MAX_SESSION_ID_LENGTH));
+        record.setStatus(fit(transaction.getStatus(), MAX_STATUS_LENGTH));
+        record.setType(fit(transaction.getType(), MAX_TYPE_LENGTH));
+        if (transaction.getAmount() != null) {
+            record.setAmount(fit(transaction.getAmount().getValue()));
+            record.setCurrency(fit(transaction.getAmount().getCurrency(), MAX_CURRENCY_LENGTH));
+        }
+        if (transaction.getTransactionCost() != null) {
+            record.setTransactionCost(fit(transaction.getTransactionCost().getValue()));
+        }
+        if (transaction.getMpesaBalance() != null) {
+            record.setMpesaBalance(fit(transaction.getMpesaBalance().getValue()));
+        }
+        record.setTransactionDate(MpesaDates.parse(transaction.getTransactionDate()));
+        record.setTransactionTime(fit(transaction.getTransactionTime(), MAX_TIME_LENGTH));
+        record.setMerchant(fit(transaction.getMerchant(), MAX_MERCHANT_LENGTH));
+        try {
+            record.setDetails(objectMapper.writeValueAsString(transaction));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize transaction " + transaction.getTransactionId(), e);
+        }
+        record.setUpdatedAt(now);
+        return record;
+    }
+
+    private static String fit(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    private static BigDecimal fit(BigDecimal amount) {
+        return amount != null && amount.abs().compareTo(MAX_AMOUNT) >= 0 ? null : amount;
+    }
+}
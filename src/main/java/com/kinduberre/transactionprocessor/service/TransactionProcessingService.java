@@ -1,17 +1,28 @@
 package com.kinduberre.transactionprocessor.service;
 
 import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
 import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
 import com.kinduberre.transactionprocessor.dto.ProcessingStats;
 import com.kinduberre.transactionprocessor.dto.TransactionData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 @Service
 public class TransactionProcessingService {
@@ -23,28 +34,115 @@ public class TransactionProcessingService {
 
     private final TransactionStatsService statsService;
 
-    public TransactionProcessingService(LLMService llmService, TransactionStatsService statsService) {
+    private final MpesaTemplateParser templateParser;
+
+    private final ExtractionCache extractionCache;
+
+    private final TransactionPersistenceService persistenceService;
+
+    private final ExtractionCoalescer coalescer;
+
+    private final ExtractionMetrics metrics;
+
+    private final SmsBackupReader backupReader;
+
+    private final FairBatchScheduler scheduler;
+
+    private final MessageClassifier classifier;
+
+    private final TransactionAnalyticsService analyticsService;
+
+    @Value("${extraction.templates.enabled}")
+    private boolean templatesEnabled;
+
+    @Value("${extraction.classifier.enabled}")
+    private boolean classifierEnabled;
+
+    @Value("${upload.chunk-size}")
+    private int uploadChunkSize;
+
+    @Value("${extraction.coalescing.interactive-max-wait}")
+    private Duration interactiveCoalescingWait;
+
+    @Value("${extraction.coalescing.bulk-max-wait}")
+    private Duration bulkCoalescingWait;
+
+    public TransactionProcessingService(LLMService llmService, TransactionStatsService statsService,
+                                        MpesaTemplateParser templateParser, ExtractionCache extractionCache,
+                                        TransactionPersistenceService persistenceService,
+                                        ExtractionCoalescer coalescer, ExtractionMetrics metrics,
+                                        SmsBackupReader backupReader, FairBatchScheduler scheduler,
+                                        MessageClassifier classifier, TransactionAnalyticsService analyticsService) {
         this.llmService = llmService;
         this.statsService = statsService;
+        this.templateParser = templateParser;
+        this.extractionCache = extractionCache;
+        this.persistenceService = persistenceService;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.backupReader = backupReader;
+        this.scheduler = scheduler;
+        this.classifier = classifier;
+        this.analyticsService = analyticsService;
     }
 
     public ProcessingResponse processTransactionsBulk(BulkTransactionRequest request) {
+        return processTransactionsBulk(request, BatchListener.NONE);
+    }
+
+    /**
+     * Processes the request, reporting progress of the LLM batches to the listener.
+     */
+    public ProcessingResponse processTransactionsBulk(BulkTransactionRequest request, BatchListener progress) {
+        return processTransactionsBulk(request, progress, List.of());
+    }
+
+    /**
+     * Processes the request, reusing batches a previous attempt at the same job already
+     * completed. A batch is reused when all of its messages still need the LLM.
+     */
+    public ProcessingResponse processTransactionsBulk(BulkTransactionRequest request, BatchListener progress,
+                                                      List<JobJournal.CompletedBatch> completed) {
         String sessionId = request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString();
 
         logger.info("Processing {} transaction messages for session {}", request.getMessages().size(), sessionId);
 
         try {
-            List<TransactionData> transactions = llmService.processTransactionMessages(request.getMessages());
+            // Every path puts its results on the message they came from, so the response
+            // follows the input order
+            MessageResults results = new MessageResults(request.getMessages());
+            List<ProcessingError> errors = Collections.synchronizedList(new ArrayList<>());
+            Map<String, Integer> extractionPaths = new LinkedHashMap<>();
+
+            List<String> misses = resolveLocally(results, extractionPaths, errors::add);
+            if (!completed.isEmpty()) {
+                misses = reuseCompleted(misses, completed, results, extractionPaths);
+            }
+            if (!misses.isEmpty()) {
+                FairBatchScheduler.Owner owner = scheduler.ownerFor(request.getUserId(), misses.size());
+                extractCoalesced(misses, owner,
+                        ((BatchListener) this::cacheBatchResults).andThen(results::putBatch)
+                                .andThen(errorCollector(errors::add)).andThen(progress),
+                        (messages, listener) -> llmService.streamTransactionMessages(messages, listener, owner))
+                        .forEach(results::put);
+            }
+            // Repeated messages are listed at each occurrence but stored once
+            List<TransactionData> transactions = results.inOrder();
 
             ProcessingResponse response = new ProcessingResponse(sessionId, transactions);
             response.setTotalMessages(request.getMessages().size());
             response.setSuccessfullyProcessed(transactions.size());
+            response.setErrors(new ArrayList<>(errors));
+            response.setExtractionPaths(extractionPaths);
 
             // Calculate stats
-            ProcessingStats stats = statsService.calculateStats(transactions);
+            ProcessingStats stats = metrics.timeStats(() -> statsService.calculateStats(transactions));
             response.setStats(stats);
 
-            logger.info("Successfully processed {} transactions for session {}", transactions.size(), sessionId);
+            store(request.getUserId(), sessionId, results.extracted());
+
+            logger.info("Successfully processed {} transactions for session {} via {}",
+                    transactions.size(), sessionId, extractionPaths);
 
             return response;
 
@@ -54,8 +152,270 @@ public class TransactionProcessingService {
         }
     }
 
-    @Async
-    public CompletableFuture<ProcessingResponse> processTransactionsAsync(BulkTransactionRequest request) {
-        return CompletableFuture.completedFuture(processTransactionsBulk(request));
+    /**
+     * Processes the request and hands each transaction to the sink as soon as it is
+     * available: template and cache hits first, then LLM results as their batches
+     * complete. Only running stats are kept, so memory does not grow with the upload.
+     * Rejected reply elements and failed batches go to the error sink.
+     *
+     * @return stats over every transaction passed to the sink
+     */
+    public ProcessingStats processTransactionsStreaming(BulkTransactionRequest request, Consumer<TransactionData> sink,
+                                                        Consumer<ProcessingError> errorSink) {
+        String sessionId = request.getSessionId() != null ? request.getSessionId() : UUID.randomUUID().toString();
+
+        return streamChunk(request.getMessages(), request.getUserId(), null, sessionId, sink, errorSink).toStats();
+    }
+
+    /**
+     * Processes an SMS backup while it is being read. M-PESA messages are collected into
+     * chunks of {@code upload.chunk-size} and each chunk is streamed like a request, so
+     * only one chunk and the running stats are held however large the file is.
+     *
+     * @return stats over every transaction passed to the sink
+     * @throws IllegalArgumentException if the backup is neither SMS backup XML nor CSV
+     */
+    public ProcessingStats processBackupStreaming(InputStream backup, String filename, String userId, String sessionId,
+                                                  Consumer<TransactionData> sink, Consumer<ProcessingError> errorSink)
+            throws IOException {
+        String session = sessionId != null ? sessionId : UUID.randomUUID().toString();
+        StatsAccumulator total = new StatsAccumulator();
+        List<String> chunk = new ArrayList<>(uploadChunkSize);
+        int[] read = {0};
+
+        backupReader.read(backup, filename, message -> {
+            chunk.add(message);
+            read[0]++;
+            if (chunk.size() >= uploadChunkSize) {
+                total.merge(streamBackupChunk(chunk, userId, session, sink, errorSink));
+            }
+        });
+        if (!chunk.isEmpty()) {
+            total.merge(streamBackupChunk(chunk, userId, session, sink, errorSink));
+        }
+
+        logger.info("Streamed {} transactions from {} M-PESA messages in backup {} for session {}",
+                total.getCount(), read[0], filename, session);
+        return total.toStats();
+    }
+
+    private StatsAccumulator streamBackupChunk(List<String> chunk, String userId, String sessionId,
+                                               Consumer<TransactionData> sink, Consumer<ProcessingError> errorSink) {
+        // The reader runs on the job thread, so a client disconnect shows up here
+        if (Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("Backup processing interrupted");
+        }
+        // A backup is bulk work however few of a chunk's messages reach the LLM
+        StatsAccumulator stats = streamChunk(new ArrayList<>(chunk), userId, FairBatchScheduler.Lane.BULK, sessionId,
+                sink, errorSink);
+        chunk.clear();
+        return stats;
+    }
+
+    /**
+     * Streams one request or backup chunk. Its LLM batches are scheduled in {@code lane},
+     * or in the lane matching the number of LLM messages when {@code lane} is null.
+     */
+    private StatsAccumulator streamChunk(List<String> chunkMessages, String userId, FairBatchScheduler.Lane lane,
+                                         String sessionId, Consumer<TransactionData> sink,
+                                         Consumer<ProcessingError> errorSink) {
+        logger.info("Streaming {} transaction messages for session {}", chunkMessages.size(), sessionId);
+
+        MessageResults local = new MessageResults(chunkMessages);
+        Map<String, Integer> extractionPaths = new LinkedHashMap<>();
+
+        List<String> misses = resolveLocally(local, extractionPaths, errorSink);
+        List<TransactionData> resolved = local.inOrder();
+        resolved.forEach(sink);
+        store(userId, sessionId, local.extracted());
+        StatsAccumulator stats = metrics.timeStats(() -> statsService.accumulate(resolved));
+
+        if (!misses.isEmpty()) {
+            FairBatchScheduler.Owner owner = lane != null
+                    ? new FairBatchScheduler.Owner(userId, lane)
+                    : scheduler.ownerFor(userId, misses.size());
+            BatchListener delivery = (messages, batchResults) -> {
+                List<TransactionData> delivered = local.withRepeats(messages, batchResults);
+                delivered.forEach(sink);
+                store(userId, sessionId, batchResults);
+                stats.merge(metrics.timeStats(() -> statsService.accumulate(delivered)));
+            };
+            Map<String, TransactionData> reused = extractCoalesced(misses, owner,
+                    ((BatchListener) this::cacheBatchResults).andThen(delivery).andThen(errorCollector(errorSink)),
+                    (messages, listener) -> llmService.streamTransactionMessages(messages, listener, owner));
+            if (!reused.isEmpty()) {
+                delivery.onBatchCompleted(new ArrayList<>(reused.keySet()), new ArrayList<>(reused.values()));
+            }
+        }
+
+        logger.info("Streamed {} transactions for session {} via {}", stats.getCount(), sessionId, extractionPaths);
+        return stats;
+    }
+
+    private void store(String userId, String sessionId, List<TransactionData> transactions) {
+        persistenceService.save(userId, sessionId, transactions);
+        analyticsService.index(userId, transactions);
+    }
+
+    private List<String> reuseCompleted(List<String> misses, List<JobJournal.CompletedBatch> completed,
+                                        MessageResults results, Map<String, Integer> extractionPaths) {
+        Set<String> remaining = new HashSet<>();
+        for (String message : misses) {
+            remaining.add(ExtractionCache.keyOf(message));
+        }
+        int reused = 0;
+        for (JobJournal.CompletedBatch batch : completed) {
+            List<String> keys = batch.messages().stream().map(ExtractionCache::keyOf).toList();
+            if (remaining.containsAll(keys)) {
+                results.putBatch(batch.messages(), batch.transactions());
+                keys.forEach(remaining::remove);
+                reused += keys.size();
+            }
+        }
+        List<String> unresolved = misses.stream()
+                .filter(message -> remaining.contains(ExtractionCache.keyOf(message)))
+                .toList();
+        if (reused > 0) {
+            extractionPaths.put("journal", reused);
+            extractionPaths.put("llm", unresolved.size());
+        }
+        return unresolved;
+    }
+
+    /**
+     * Resolves messages without the LLM: repeats of a message in the same request share
+     * the result of its first occurrence, then known templates are parsed, messages that are not transactions are
+     * skipped and previously cached extractions reused. Resolved transactions are put
+     * into {@code resolved}, skipped messages reported to {@code skipped}.
+     *
+     * @return the distinct messages still needing an LLM call, in their original order
+     */
+    private List<String> resolveLocally(MessageResults resolved, Map<String, Integer> extractionPaths,
+                                        Consumer<ProcessingError> skipped) {
+        // The same SMS describes the same transaction, so it is extracted once
+        List<String> distinct = resolved.distinct();
+
+        List<String> unmatched = new ArrayList<>();
+
+        // Known templates are parsed locally, only the rest pays for an LLM call
+        for (String message : distinct) {
+            TransactionData parsed = templatesEnabled ? templateParser.parse(message) : null;
+            if (parsed != null) {
+                resolved.put(message, parsed);
+            } else {
+                unmatched.add(message);
+            }
+        }
+
+        // OTPs, promotions and notices would only take up room in a paid batch
+        List<String> relevant = new ArrayList<>();
+        for (String message : unmatched) {
+            MessageClassifier.Classification classification = classifierEnabled
+                    ? classifier.classify(message) : null;
+            if (classification != null && classification.label() == MessageClassifier.Label.NON_TRANSACTION) {
+                skipped.accept(new ProcessingError("Not a transaction message, skipped", message, "SKIPPED",
+                        classification.reason()));
+            } else {
+                relevant.add(message);
+            }
+        }
+
+        // Previously extracted message texts are served from the cache
+        List<String> misses = new ArrayList<>();
+        for (String message : relevant) {
+            TransactionData cached = extractionCache.isEnabled()
+                    ? extractionCache.get(ExtractionCache.keyOf(message)) : null;
+            if (cached != null) {
+                resolved.put(message, cached);
+            } else {
+                misses.add(message);
+            }
+        }
+
+        extractionPaths.put("duplicate", resolved.duplicates());
+        extractionPaths.put("template", distinct.size() - unmatched.size());
+        extractionPaths.put("skipped", unmatched.size() - relevant.size());
+        extractionPaths.put("cache", relevant.size() - misses.size());
+        extractionPaths.put("llm", misses.size());
+        metrics.recordExtractionPaths(extractionPaths);
+        return misses;
+    }
+
+    /**
+     * Sends the messages to the LLM through {@code extractor}, which reports results to
+     * the listener, except those another request is already extracting: their results
+     * are awaited and reused. Reused messages that come back without a result, or whose
+     * result is not ready within the owner's lane wait, are extracted afterwards.
+     *
+     * @return the reused results by message
+     */
+    private Map<String, TransactionData> extractCoalesced(List<String> messages, FairBatchScheduler.Owner owner,
+                                                          BatchListener listener,
+                                                          BiConsumer<List<String>, BatchListener> extractor) {
+        ExtractionCoalescer.Claim claim = coalescer.claim(messages);
+        try {
+            if (!claim.getLedMessages().isEmpty()) {
+                // The cache is filled before the claim hands results to attached requests
+                extractor.accept(claim.getLedMessages(), listener.andThen(claim));
+            }
+        } finally {
+            claim.release();
+        }
+        if (!claim.hasAttached()) {
+            return Map.of();
+        }
+
+        // An interactive request does not sit behind a bulk upload extracting the same message
+        Duration maxWait = owner.lane() == FairBatchScheduler.Lane.INTERACTIVE
+                ? interactiveCoalescingWait : bulkCoalescingWait;
+        List<String> unresolved = new ArrayList<>();
+        Map<String, TransactionData> reused;
+        try {
+            reused = claim.awaitAttached(maxWait, unresolved);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch processing interrupted", e);
+        }
+        logger.info("Reused {} extractions from concurrent requests, {} left to extract",
+                reused.size(), unresolved.size());
+        if (!unresolved.isEmpty()) {
+            extractor.accept(unresolved, listener);
+        }
+        return reused;
+    }
+
+    /**
+     * Reports rejected reply elements as they are, and a failed batch as one error per
+     * message so clients can tell which messages to resubmit.
+     */
+    private BatchListener errorCollector(Consumer<ProcessingError> errors) {
+        return new BatchListener() {
+            @Override
+            public void onBatchCompleted(List<String> messages, List<TransactionData> transactions) {
+            }
+
+            @Override
+            public void onBatchErrors(List<String> messages, List<ProcessingError> batchErrors) {
+                batchErrors.forEach(errors);
+            }
+
+            @Override
+            public void onBatchFailed(List<String> messages, Throwable error) {
+                for (String message : messages) {
+                    errors.accept(new ProcessingError(error.getMessage(), message, "LLM_ERROR", "BATCH_FAILED"));
+                }
+            }
+        };
+    }
+
+    private void cacheBatchResults(List<String> messages, List<TransactionData> transactions) {
+        if (!extractionCache.isEnabled()) {
+            return;
+        }
+        // Only results whose transaction code is found in their message are cached; a
+        // reply that drops one message and splits another still has the right count
+        MessageResults.attributeByCode(messages, transactions)
+                .forEach((index, transaction) -> extractionCache.put(ExtractionCache.keyOf(messages.get(index)),
+                        transaction));
     }
 }
@@ -0,0 +1,167 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import com.kinduberre.transactionprocessor.dto.ProcessingEvent;
+import com.kinduberre.transactionprocessor.dto.ProcessingStats;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Adapts {@link TransactionProcessingService#processTransactionsStreaming} and
+ * {@link TransactionProcessingService#processBackupStreaming} to a {@link Flux} of
+ * events. Processing runs on the stream executor so the servlet thread is released, and
+ * a client disconnect interrupts it. The processing thread waits for the client to
+ * request more events, so a slow client slows extraction down rather than filling a
+ * buffer. Streams beyond {@code streaming.max-concurrent} are rejected with 503.
+ */
+@Service
+public class TransactionStreamService {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionStreamService.class);
+
+    private final TransactionProcessingService processingService;
+    private final AsyncTaskExecutor streamExecutor;
+    private final Semaphore openStreams;
+
+    public TransactionStreamService(TransactionProcessingService processingService,
+                                    @Qualifier("streamExecutor") AsyncTaskExecutor streamExecutor,
+                                    @Value("${streaming.max-concurrent}") int maxConcurrent) {
+        this.processingService = processingService;
+        this.streamExecutor = streamExecutor;
+        this.openStreams = new Semaphore(maxConcurrent);
+    }
+
+    public Flux<ProcessingEvent> stream(BulkTransactionRequest request) {
+        return streamOnExecutor(request.getSessionId(), (transactions, errors) ->
+                processingService.processTransactionsStreaming(request, transactions, errors));
+    }
+
+    /**
+     * Streams the extractions of an uploaded SMS backup. The upload is read from the
+     * multipart part, which the servlet container keeps on disk, not on the heap.
+     */
+    public Flux<ProcessingEvent> streamBackup(MultipartFile backup, String userId, String sessionId) {
+        return streamOnExecutor(sessionId, (transactions, errors) -> {
+            try (InputStream input = backup.getInputStream()) {
+                return processingService.processBackupStreaming(input, backup.getOriginalFilename(), userId, sessionId,
+                        transactions, errors);
+            }
+        });
+    }
+
+    private Flux<ProcessingEvent> streamOnExecutor(String sessionId, StreamingTask streamingTask) {
+        // Checked before the Flux is returned: once it is subscribed the response is committed.
+        // The permit itself is only taken on subscription, so an unsubscribed Flux holds none
+        if (openStreams.availablePermits() == 0) {
+            throw tooManyStreams();
+        }
+        // Events are only emitted against demand, so nothing is ever buffered
+        return Flux.create(sink -> {
+            if (!openStreams.tryAcquire()) {
+                sink.error(tooManyStreams());
+                return;
+            }
+            // Given back once, by whichever comes first: the task finishing, the task being
+            // rejected, or the sink being disposed, which covers a cancelled task that never ran
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    openStreams.release();
+                }
+            };
+            Demand demand = new Demand();
+            sink.onRequest(demand::add);
+            Future<?> task;
+            try {
+                task = streamExecutor.submit(() -> {
+                    try {
+                        ProcessingStats stats = streamingTask.run(
+                                transaction -> emit(sink, demand, ProcessingEvent.transaction(transaction)),
+                                error -> emit(sink, demand, ProcessingEvent.error(error)));
+                        emit(sink, demand, ProcessingEvent.stats(stats));
+                        sink.complete();
+                    } catch (Exception e) {
+                        if (sink.isCancelled()) {
+                            logger.info("Client left, stopped streaming session {}", sessionId);
+                            return;
+                        }
+                        logger.error("Streaming failed for session {}: {}", sessionId, e.getMessage());
+                        try {
+                            emit(sink, demand, ProcessingEvent.error(
+                                    new ProcessingError(e.getMessage(), null, "PROCESSING_FAILED", "STREAM_ABORTED")));
+                            sink.complete();
+                        } catch (RuntimeException cancelled) {
+                            // The client left while the error was being sent
+                        }
+                    } finally {
+                        release.run();
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                release.run();
+                sink.error(e);
+                return;
+            }
+            sink.onCancel(() -> task.cancel(true));
+            sink.onDispose(release::run);
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    private static ResponseStatusException tooManyStreams() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many open streams, retry later");
+    }
+
+    private static void emit(FluxSink<ProcessingEvent> sink, Demand demand, ProcessingEvent event) {
+        try {
+            demand.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Stream cancelled");
+        }
+        sink.next(event);
+    }
+
+    /**
+     * Events requested by the subscriber and not yet emitted.
+     */
+    static final class Demand {
+        private long requested;
+
+        synchronized void add(long n) {
+            requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+            notifyAll();
+        }
+
+        synchronized void take() throws InterruptedException {
+            while (requested == 0) {
+                wait();
+            }
+            if (requested != Long.MAX_VALUE) {
+                requested--;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StreamingTask {
+        ProcessingStats run(Consumer<TransactionData> transactions, Consumer<ProcessingError> errors) throws Exception;
+    }
+}
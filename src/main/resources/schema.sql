@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS transactions (
+    id               BIGSERIAL PRIMARY KEY,
+    transaction_id   VARCHAR(32)    NOT NULL,
+    user_id          VARCHAR(128)   NOT NULL,
+    session_id       VARCHAR(64),
+    status           VARCHAR(32),
+    type             VARCHAR(64),
+    amount           NUMERIC(15, 2),
+    currency         VARCHAR(8),
+    transaction_cost NUMERIC(15, 2),
+    mpesa_balance    NUMERIC(15, 2),
+    transaction_date DATE,
+    transaction_time VARCHAR(16),
+    merchant         VARCHAR(255),
+    details          TEXT,
+    updated_at       TIMESTAMP      NOT NULL,
+    CONSTRAINT uk_transactions_transaction_user UNIQUE (transaction_id, user_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_user_date ON transactions (user_id, transaction_date);
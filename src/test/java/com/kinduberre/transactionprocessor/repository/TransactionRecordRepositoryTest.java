@@ -0,0 +1,118 @@
+package com.kinduberre.transactionprocessor.repository;
+
+import com.kinduberre.transactionprocessor.entity.TransactionRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the upsert and the date queries against a real PostgreSQL, since
+ * {@code ON CONFLICT} has no equivalent in the embedded databases. Skipped where
+ * Docker is not available.
+ */
+@DataJpaTest(properties = {"spring.sql.init.mode=always", "persistence.batch-size=2"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionRecordRepositoryTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withUrlParam("reWriteBatchedInserts", "true");
+
+    @Autowired
+    private TransactionRecordRepository repository;
+
+    @Test
+    void upsertInsertsNewRowsAndUpdatesExistingOnes() {
+        repository.upsertAll(List.of(
+                record("QAB1CD2EF3", "alice", "2025-06-01", "100.00"),
+                record("QAB1CD2EF4", "alice", "2025-06-02", "200.00"),
+                record("QAB1CD2EF3", "bob", "2025-06-01", "300.00")));
+
+        int written = repository.upsertAll(List.of(
+                record("QAB1CD2EF3", "alice", "2025-06-03", "150.00"),
+                record("QAB1CD2EF5", "alice", "2025-06-04", "50.00")));
+
+        assertThat(written).isEqualTo(2);
+        assertThat(repository.count()).isEqualTo(4);
+        List<TransactionRecord> alice = repository.findByUserIdOrderByTransactionDateAsc("alice");
+        assertThat(alice).extracting(TransactionRecord::getTransactionId)
+                .containsExactly("QAB1CD2EF4", "QAB1CD2EF3", "QAB1CD2EF5");
+        assertThat(alice.get(1).getAmount()).isEqualByComparingTo("150.00");
+        assertThat(alice.get(1).getTransactionDate()).isEqualTo(LocalDate.parse("2025-06-03"));
+        // The same code under another user is a separate row and left alone
+        assertThat(repository.findByUserIdOrderByTransactionDateAsc("bob"))
+                .singleElement()
+                .satisfies(record -> assertThat(record.getAmount()).isEqualByComparingTo("300.00"));
+    }
+
+    @Test
+    void upsertWritesEveryBatch() {
+        List<TransactionRecord> records = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            records.add(record("QAB1CD2E" + (10 + i), "alice", "2025-06-01", "10.00"));
+        }
+
+        assertThat(repository.upsertAll(records)).isEqualTo(7);
+        assertThat(repository.count()).isEqualTo(7);
+    }
+
+    @Test
+    void pagesThroughOneSidedDateRanges() {
+        repository.upsertAll(List.of(
+                record("QAB1CD2EF1", "alice", "2025-05-30", "1.00"),
+                record("QAB1CD2EF2", "alice", "2025-06-01", "2.00"),
+                record("QAB1CD2EF3", "alice", "2025-06-01", "3.00"),
+                record("QAB1CD2EF4", "alice", "2025-06-05", "4.00")));
+
+        Slice<TransactionRecord> first = repository
+                .findByUserIdAndTransactionDateGreaterThanEqualOrderByTransactionDateAscIdAsc(
+                        "alice", LocalDate.parse("2025-06-01"), PageRequest.of(0, 2));
+        Slice<TransactionRecord> second = repository
+                .findByUserIdAndTransactionDateGreaterThanEqualOrderByTransactionDateAscIdAsc(
+                        "alice", LocalDate.parse("2025-06-01"), PageRequest.of(1, 2));
+        Slice<TransactionRecord> until = repository
+                .findByUserIdAndTransactionDateLessThanEqualOrderByTransactionDateAscIdAsc(
+                        "alice", LocalDate.parse("2025-06-01"), PageRequest.of(0, 10));
+
+        assertThat(first.getContent()).extracting(TransactionRecord::getTransactionId)
+                .containsExactly("QAB1CD2EF2", "QAB1CD2EF3");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(TransactionRecord::getTransactionId)
+                .containsExactly("QAB1CD2EF4");
+        assertThat(second.hasNext()).isFalse();
+        assertThat(until.getContent()).extracting(TransactionRecord::getTransactionId)
+                .containsExactly("QAB1CD2EF1", "QAB1CD2EF2", "QAB1CD2EF3");
+    }
+
+    private static TransactionRecord record(String transactionId, String userId, String date, String amount) {
+        TransactionRecord record = new TransactionRecord();
+        record.setTransactionId(transactionId);
+        record.setUserId(userId);
+        record.setSessionId("session");
+        record.setStatus("Confirmed");
+        record.setType("send_money");
+        record.setAmount(new BigDecimal(amount));
+        record.setCurrency("KSH");
+        record.setTransactionDate(LocalDate.parse(date));
+        record.setDetails("{\"transaction_id\":\"" + transactionId + "\"}");
+        record.setUpdatedAt(LocalDateTime.now());
+        return record;
+    }
+}
@@ -0,0 +1,102 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static com.kinduberre.transactionprocessor.service.TransactionFixtures.transaction;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtractionCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void keyIgnoresWhitespaceDifferences() {
+        assertThat(ExtractionCache.keyOf("  ABC Confirmed.\n Ksh10.00  sent"))
+                .isEqualTo(ExtractionCache.keyOf("ABC Confirmed.\n Ksh10.00 sent"));
+        assertThat(ExtractionCache.keyOf("a b")).isNotEqualTo(ExtractionCache.keyOf("a c"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() {
+        ExtractionCache cache = new ExtractionCache(new ObjectMapper(), true, 2, Duration.ofHours(1), false, null, 10);
+
+        cache.put("a", transaction("A"));
+        cache.put("b", transaction("B"));
+        cache.get("a");
+        cache.put("c", transaction("C"));
+
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isNotNull();
+        assertThat(cache.getStats().getHits()).isEqualTo(3);
+        assertThat(cache.getStats().getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void diskTierSurvivesANewInstance() {
+        ExtractionCache first = new ExtractionCache(new ObjectMapper(), true, 10, Duration.ofHours(1),
+                true, cacheDir.toString(), 10);
+        first.put(ExtractionCache.keyOf("message"), transaction("TX1"));
+
+        ExtractionCache restarted = new ExtractionCache(new ObjectMapper(), true, 10, Duration.ofHours(1),
+                true, cacheDir.toString(), 10);
+
+        assertThat(restarted.get(ExtractionCache.keyOf("message")).getTransactionId()).isEqualTo("TX1");
+        assertThat(restarted.getStats().getHitRatio()).isEqualTo(1.0);
+    }
+
+    @Test
+    void sweepRemovesExpiredAndOldestDiskEntries() throws Exception {
+        ExtractionCache cache = new ExtractionCache(new ObjectMapper(), true, 10, Duration.ofHours(1),
+                true, cacheDir.toString(), 2);
+        long now = System.currentTimeMillis();
+        String[] keys = new String[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = ExtractionCache.keyOf("message " + i);
+            cache.put(keys[i], transaction("TX" + i));
+        }
+        // Expired, then oldest to newest
+        age(keys[0], now - Duration.ofHours(2).toMillis());
+        age(keys[1], now - 3_000);
+        age(keys[2], now - 2_000);
+        age(keys[3], now - 1_000);
+
+        cache.sweepDisk();
+
+        assertThat(diskFile(keys[0])).doesNotExist();
+        assertThat(diskFile(keys[1])).doesNotExist();
+        assertThat(diskFile(keys[2])).exists();
+        assertThat(diskFile(keys[3])).exists();
+    }
+
+    @Test
+    void hitsAreCopiesOfTheCachedExtraction() {
+        ExtractionCache cache = new ExtractionCache(new ObjectMapper(), true, 10, Duration.ofHours(1), false, null, 10);
+        TransactionData stored = transaction("TX1");
+        cache.put("a", stored);
+        stored.setTransactionId("changed");
+
+        TransactionData hit = cache.get("a");
+        hit.setStatus("Reversed");
+
+        assertThat(hit.getTransactionId()).isEqualTo("TX1");
+        assertThat(cache.get("a").getStatus()).isNull();
+    }
+
+    private void age(String key, long modifiedAt) throws Exception {
+        Files.setLastModifiedTime(diskFile(key), FileTime.fromMillis(modifiedAt));
+    }
+
+    private Path diskFile(String key) {
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key + ".json");
+    }
+}
@@ -0,0 +1,100 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.kinduberre.transactionprocessor.service.TransactionFixtures.transaction;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtractionCoalescerTest {
+
+    private static final String A = "QA11111111 Confirmed. Ksh100.00 sent to JOHN DOE";
+    private static final String B = "QB22222222 Confirmed. Ksh200.00 paid to NAIVAS";
+    private static final String C = "QC33333333 Confirmed. You have received Ksh300.00";
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private final ExtractionCoalescer coalescer = new ExtractionCoalescer(new ObjectMapper());
+
+    @Test
+    void laterClaimsAttachToTheLeader() throws InterruptedException {
+        ExtractionCoalescer.Claim leader = coalescer.claim(List.of(A, B));
+        ExtractionCoalescer.Claim follower = coalescer.claim(List.of(" " + A, C));
+
+        assertThat(leader.getLedMessages()).containsExactly(A, B);
+        assertThat(follower.getLedMessages()).containsExactly(C);
+        assertThat(follower.hasAttached()).isTrue();
+
+        leader.onBatchCompleted(List.of(A, B), List.of(transaction("QA11111111"), transaction("QB22222222")));
+        leader.release();
+
+        List<String> unresolved = new ArrayList<>();
+        assertThat(follower.awaitAttached(WAIT, unresolved).values()).extracting("transactionId")
+                .containsExactly("QA11111111");
+        assertThat(unresolved).isEmpty();
+
+        follower.release();
+        assertThat(coalescer.getInFlightCount()).isZero();
+    }
+
+    @Test
+    void unattributableResultsLeaveAttachedMessagesUnresolved() throws InterruptedException {
+        ExtractionCoalescer.Claim leader = coalescer.claim(List.of(A, B));
+        ExtractionCoalescer.Claim follower = coalescer.claim(List.of(B));
+
+        // The counts line up, but neither code is in its message
+        leader.onBatchCompleted(List.of(A, B), List.of(transaction("QA11111111"), transaction("QX99999999")));
+        leader.release();
+
+        List<String> unresolved = new ArrayList<>();
+        assertThat(follower.awaitAttached(WAIT, unresolved)).isEmpty();
+        assertThat(unresolved).containsExactly(B);
+    }
+
+    @Test
+    void stopsWaitingForASlowLeader() throws InterruptedException {
+        ExtractionCoalescer.Claim leader = coalescer.claim(List.of(A, B));
+        ExtractionCoalescer.Claim follower = coalescer.claim(List.of(A, B));
+
+        leader.onBatchCompleted(List.of(A), List.of(transaction("QA11111111")));
+
+        // B is still being extracted by the leader when the follower gives up on it
+        List<String> unresolved = new ArrayList<>();
+        assertThat(follower.awaitAttached(Duration.ofMillis(50), unresolved).values())
+                .extracting("transactionId").containsExactly("QA11111111");
+        assertThat(unresolved).containsExactly(B);
+        leader.release();
+    }
+
+    @Test
+    void everyAttachedRequestGetsItsOwnCopy() throws InterruptedException {
+        ExtractionCoalescer.Claim leader = coalescer.claim(List.of(A));
+        ExtractionCoalescer.Claim first = coalescer.claim(List.of(A));
+        ExtractionCoalescer.Claim second = coalescer.claim(List.of(A));
+
+        TransactionData extracted = transaction("QA11111111");
+        extracted.setMerchant("NAIVAS");
+        leader.onBatchCompleted(List.of(A), List.of(extracted));
+        leader.release();
+        // The leader's request goes on to change its own instance
+        extracted.setMerchant("changed by the leader");
+
+        TransactionData firstCopy = first.awaitAttached(WAIT, new ArrayList<>()).get(A);
+        firstCopy.setMerchant("changed by the first follower");
+        TransactionData secondCopy = second.awaitAttached(WAIT, new ArrayList<>()).get(A);
+
+        assertThat(secondCopy).isNotSameAs(firstCopy);
+        assertThat(secondCopy.getMerchant()).isEqualTo("NAIVAS");
+    }
+
+    @Test
+    void releasedMessagesCanBeClaimedAgain() {
+        coalescer.claim(List.of(A)).release();
+
+        assertThat(coalescer.claim(List.of(A)).getLedMessages()).containsExactly(A);
+    }
+}
@@ -0,0 +1,107 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtractionMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExtractionMetrics metrics = new ExtractionMetrics(registry);
+
+    @Test
+    void stagesAreTimedUnderOneTimerTaggedByStage() {
+        assertThat(metrics.timeBatching(() -> "batches")).isEqualTo("batches");
+        metrics.timePrompt(() -> "prompt");
+        metrics.timePrompt(() -> "prompt");
+        metrics.timeParse(() -> "parsed");
+        metrics.timeStats(() -> "stats");
+
+        assertThat(registry.get("extraction.stage").tag("stage", "batch").timer().count()).isEqualTo(1);
+        assertThat(registry.get("extraction.stage").tag("stage", "prompt").timer().count()).isEqualTo(2);
+        assertThat(registry.get("extraction.stage").tag("stage", "parse").timer().count()).isEqualTo(1);
+        assertThat(registry.get("extraction.stage").tag("stage", "stats").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void httpAttemptIsTimedOncePerOutcome() {
+        ExtractionMetrics.HttpSample success = metrics.startHttp();
+        success.stop("success");
+        // A cancellation after the reply does not count the attempt again
+        success.stop("cancelled");
+        metrics.startHttp().stop("error");
+
+        assertThat(registry.get("llm.http").tag("outcome", "success").timer().count()).isEqualTo(1);
+        assertThat(registry.get("llm.http").tag("outcome", "error").timer().count()).isEqualTo(1);
+        assertThat(registry.find("llm.http").tag("outcome", "cancelled").timer()).isNull();
+    }
+
+    @Test
+    void countsTokensByType() {
+        metrics.recordUsage(new LLMParseResult(List.of(), List.of(), false, 1200, 300, 900));
+        metrics.recordUsage(new LLMParseResult(List.of(), List.of(), false, 800, 100, 0));
+
+        assertThat(registry.get("llm.tokens").tag("type", "input").counter().count()).isEqualTo(2000);
+        assertThat(registry.get("llm.tokens").tag("type", "output").counter().count()).isEqualTo(400);
+        assertThat(registry.get("llm.tokens").tag("type", "cache_read").counter().count()).isEqualTo(900);
+    }
+
+    @Test
+    void countsMessagesByExtractionPath() {
+        Map<String, Integer> paths = new LinkedHashMap<>();
+        paths.put("template", 6);
+        paths.put("cache", 3);
+        paths.put("llm", 2);
+        metrics.recordExtractionPaths(paths);
+        metrics.recordExtractionPaths(Map.of("cache", 1));
+
+        assertThat(registry.get("extraction.messages").tag("path", "template").counter().count()).isEqualTo(6);
+        assertThat(registry.get("extraction.messages").tag("path", "cache").counter().count()).isEqualTo(4);
+        assertThat(registry.get("extraction.messages").tag("path", "llm").counter().count()).isEqualTo(2);
+    }
+
+    @Test
+    void countsDroppedBatchesAndParseFailures() {
+        metrics.batchDropped();
+        metrics.recordParseErrors(List.of(
+                new ProcessingError("Missing transaction ID", "{}", "VALIDATION", "MISSING_ID"),
+                new ProcessingError("Missing transaction ID", "{}", "VALIDATION", "MISSING_ID"),
+                new ProcessingError("Not an object", "[]", "PARSE", "NOT_OBJECT")));
+
+        assertThat(registry.get("llm.batches.dropped").counter().count()).isEqualTo(1);
+        assertThat(registry.get("llm.parse.failures").tag("code", "MISSING_ID").counter().count()).isEqualTo(2);
+        assertThat(registry.get("llm.parse.failures").tag("code", "NOT_OBJECT").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void gaugesBatchesInFlight() {
+        metrics.batchStarted();
+        metrics.batchStarted();
+        metrics.batchFinished();
+
+        assertThat(registry.get("llm.batches.in.flight").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsRouteAttemptsAndTheLatencyOfReplies() {
+        metrics.recordRouteAttempt("claude-3-sonnet", "primary", "won", Duration.ofMillis(800).toNanos());
+        metrics.recordRouteAttempt("claude-3-haiku", "hedge", "lost", null);
+
+        assertThat(registry.get("llm.route.attempts").tags("model", "claude-3-sonnet", "role", "primary",
+                "outcome", "won").counter().count()).isEqualTo(1);
+        assertThat(registry.get("llm.route.attempts").tags("model", "claude-3-haiku", "role", "hedge",
+                "outcome", "lost").counter().count()).isEqualTo(1);
+        assertThat(registry.get("llm.route.latency").tags("model", "claude-3-sonnet", "role", "primary")
+                .timer().totalTime(TimeUnit.MILLISECONDS)).isEqualTo(800);
+        // An attempt without a reply has no latency
+        assertThat(registry.find("llm.route.latency").tag("model", "claude-3-haiku").timer()).isNull();
+    }
+}
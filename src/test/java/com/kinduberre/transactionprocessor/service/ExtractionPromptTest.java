@@ -0,0 +1,70 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ExtractionPromptTest {
+
+    private static final String[] BY_MODEL = {"haiku=2048"};
+
+    @Test
+    void numbersMessagesInTheBatchSection() {
+        ExtractionPrompt prompt = new ExtractionPrompt("compact", true, 1024, BY_MODEL);
+
+        assertThat(prompt.messageSection(List.of("first", "second")))
+                .isEqualTo("Message 1: first\nMessage 2: second\n");
+    }
+
+    @Test
+    void compactSchemaIsMuchShorterThanTheFullOne() {
+        String compact = new ExtractionPrompt("compact", false, 1024, BY_MODEL).prefixFor("claude-3-sonnet");
+        String full = new ExtractionPrompt("full", false, 1024, BY_MODEL).prefixFor("claude-3-sonnet");
+
+        assertThat(TokenBudgetBatcher.estimateInputTokens(compact))
+                .isLessThan(TokenBudgetBatcher.estimateInputTokens(full) * 2 / 3);
+        assertThat(compact).contains("transaction_date", "mpesa_balance", "daily_transaction_limit", "recipient");
+    }
+
+    @Test
+    void cachedPrefixReachesTheProviderMinimum() {
+        ExtractionPrompt prompt = new ExtractionPrompt("compact", true, 1024, BY_MODEL);
+
+        assertThat(prompt.isCachePrefix("claude-3-sonnet-20240229")).isTrue();
+        assertThat(prompt.estimatePrefixTokens("claude-3-sonnet-20240229")).isGreaterThanOrEqualTo(1024);
+        assertThat(prompt.prefixFor("claude-3-sonnet-20240229")).startsWith(ExtractionPrompt.COMPACT_SCHEMA);
+    }
+
+    @Test
+    void modelWithAHigherMinimumGetsTheSchemaUncached() {
+        ExtractionPrompt prompt = new ExtractionPrompt("compact", true, 1024, BY_MODEL);
+
+        assertThat(prompt.cacheMinTokens("claude-3-haiku-20240307")).isEqualTo(2048);
+        assertThat(prompt.isCachePrefix("claude-3-haiku-20240307")).isFalse();
+        assertThat(prompt.prefixFor("claude-3-haiku-20240307")).isEqualTo(ExtractionPrompt.COMPACT_SCHEMA);
+        // The other model keeps its cached prefix
+        assertThat(prompt.isCachePrefix("claude-3-sonnet-20240229")).isTrue();
+    }
+
+    @Test
+    void prefixBelowTheMinimumIsSentUncached() {
+        ExtractionPrompt full = new ExtractionPrompt("full", true, 1024, BY_MODEL);
+
+        assertThat(full.estimatePrefixTokens("claude-3-sonnet")).isLessThan(1024);
+        assertThat(full.isCachePrefix("claude-3-sonnet")).isFalse();
+        // Without caching the examples would only add to every call
+        assertThat(new ExtractionPrompt("compact", false, 1024, BY_MODEL).prefixFor("claude-3-sonnet"))
+                .isEqualTo(ExtractionPrompt.COMPACT_SCHEMA);
+    }
+
+    @Test
+    void rejectsUnknownSchemaForms() {
+        assertThatThrownBy(() -> new ExtractionPrompt("verbose", true, 1024, BY_MODEL))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ExtractionPrompt("compact", true, 1024, new String[]{"2048"}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
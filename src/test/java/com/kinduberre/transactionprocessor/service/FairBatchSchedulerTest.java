@@ -0,0 +1,89 @@
+package com.kinduberre.transactionprocessor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FairBatchSchedulerTest {
+
+    private final FairBatchScheduler scheduler = new FairBatchScheduler(1, 50, 2, new SimpleMeterRegistry());
+
+    private final List<String> started = new ArrayList<>();
+    private final List<Sinks.One<String>> calls = new ArrayList<>();
+
+    @Test
+    void usersTakeTurnsWithinALane() {
+        FairBatchScheduler.Owner alice = new FairBatchScheduler.Owner("alice", FairBatchScheduler.Lane.BULK);
+        FairBatchScheduler.Owner bob = new FairBatchScheduler.Owner("bob", FairBatchScheduler.Lane.BULK);
+        // Holds the only slot while the others queue up
+        submit(new FairBatchScheduler.Owner("carol", FairBatchScheduler.Lane.BULK), "carol-1");
+        submit(alice, "alice-1");
+        submit(alice, "alice-2");
+        submit(alice, "alice-3");
+        submit(bob, "bob-1");
+        submit(bob, "bob-2");
+
+        finishAll();
+
+        assertThat(started).containsExactly("carol-1", "alice-1", "bob-1", "alice-2", "bob-2", "alice-3");
+    }
+
+    @Test
+    void interactiveLaneIsPreferredWithoutStarvingBulk() {
+        FairBatchScheduler.Owner upload = scheduler.ownerFor("alice", 5000);
+        FairBatchScheduler.Owner small = scheduler.ownerFor("bob", 3);
+        assertThat(upload.lane()).isEqualTo(FairBatchScheduler.Lane.BULK);
+        assertThat(small.lane()).isEqualTo(FairBatchScheduler.Lane.INTERACTIVE);
+
+        submit(upload, "bulk-1");
+        submit(upload, "bulk-2");
+        submit(upload, "bulk-3");
+        submit(small, "small-1");
+        submit(small, "small-2");
+        submit(small, "small-3");
+
+        finishAll();
+
+        // bulk-1 took the free slot, then two interactive batches per bulk batch
+        assertThat(started).containsExactly("bulk-1", "small-1", "small-2", "bulk-2", "small-3", "bulk-3");
+    }
+
+    @Test
+    void cancellingAQueuedBatchGivesUpItsTurn() {
+        FairBatchScheduler.Owner owner = scheduler.ownerFor("alice", 3);
+        submit(owner, "first");
+        Disposable cancelled = submit(owner, "cancelled");
+        submit(owner, "third");
+
+        cancelled.dispose();
+        assertThat(scheduler.getQueued(FairBatchScheduler.Lane.INTERACTIVE)).isEqualTo(1);
+
+        finishAll();
+
+        assertThat(started).containsExactly("first", "third");
+        assertThat(scheduler.getRunning()).isZero();
+    }
+
+    private Disposable submit(FairBatchScheduler.Owner owner, String name) {
+        return scheduler.schedule(owner, () -> {
+            started.add(name);
+            Sinks.One<String> call = Sinks.one();
+            calls.add(call);
+            return call.asMono();
+        }).subscribe();
+    }
+
+    private void finishAll() {
+        // Each finished call frees the only slot for the next one
+        for (int i = 0; i < calls.size(); i++) {
+            calls.get(i).tryEmitValue("done");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static com.kinduberre.transactionprocessor.service.TransactionFixtures.transaction;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void interruptedJobIsRecoveredWithItsCompletedBatches() throws Exception {
+        JobJournal journal = journal();
+        journal.accepted(request("session-1", "message a", "message b", "message c"));
+        journal.recorder("session-1").onBatchCompleted(List.of("message a", "message b"),
+                List.of(transaction("A"), transaction("B")));
+        journal.close();
+
+        List<JobJournal.JournaledJob> jobs = journal().recover();
+
+        assertThat(jobs).hasSize(1);
+        assertThat(jobs.get(0).request().getSessionId()).isEqualTo("session-1");
+        assertThat(jobs.get(0).request().getMessages()).containsExactly("message a", "message b", "message c");
+        assertThat(jobs.get(0).batches()).singleElement().satisfies(batch -> {
+            assertThat(batch.messages()).containsExactly("message a", "message b");
+            assertThat(batch.transactions()).extracting("transactionId").containsExactly("A", "B");
+        });
+    }
+
+    @Test
+    void recordCutShortByACrashIsTruncated() throws Exception {
+        JobJournal journal = journal();
+        journal.accepted(request("session-1", "message a"));
+        journal.close();
+        Path file;
+        try (var files = Files.list(directory)) {
+            file = files.findFirst().orElseThrow();
+        }
+        long intact = Files.size(file);
+        Files.writeString(file, "{\"type\":\"batch\",\"messa", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        List<JobJournal.JournaledJob> jobs = journal().recover();
+
+        assertThat(jobs).singleElement().satisfies(job -> assertThat(job.batches()).isEmpty());
+        assertThat(Files.size(file)).isEqualTo(intact);
+    }
+
+    @Test
+    void finishedJobsAreNotRecovered() throws Exception {
+        JobJournal journal = journal();
+        journal.accepted(request("session-1", "message a"));
+        journal.accepted(request("session-2", "message b"));
+        journal.finished("session-1");
+        journal.close();
+
+        assertThat(journal().recover()).extracting(job -> job.request().getSessionId()).containsExactly("session-2");
+    }
+
+    private JobJournal journal() {
+        return new JobJournal(objectMapper, true, directory.toString());
+    }
+
+    private static BulkTransactionRequest request(String sessionId, String... messages) {
+        BulkTransactionRequest request = new BulkTransactionRequest(List.of(messages));
+        request.setSessionId(sessionId);
+        return request;
+    }
+}
@@ -0,0 +1,158 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LLMCallGovernorTest {
+
+    private HttpServer server;
+    private WebClient webClient;
+
+    // Status codes the stub answers with, in order; 200 once the queue is empty
+    private final Queue<Integer> statuses = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/messages", exchange -> {
+            requests.incrementAndGet();
+            Integer status = statuses.poll();
+            int code = status != null ? status : 200;
+            if (code == 429) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+            }
+            byte[] body = (code == 200 ? "ok" : "error").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        webClient = WebClient.create("http://localhost:" + server.getAddress().getPort());
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void retriesServerErrorsUntilTheCallSucceeds() {
+        statuses.add(503);
+        statuses.add(500);
+        LLMCallGovernor governor = governor(4, 10);
+
+        assertThat(governor.execute(100, this::call).block()).isEqualTo("ok");
+        assertThat(requests).hasValue(3);
+    }
+
+    @Test
+    void waitsForRetryAfterWhenThrottled() {
+        statuses.add(429);
+        LLMCallGovernor governor = governor(4, 10);
+
+        long start = System.nanoTime();
+        assertThat(governor.execute(100, this::call).block()).isEqualTo("ok");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(900));
+        assertThat(requests).hasValue(2);
+        assertThat(governor.getCircuitState()).isEqualTo(LLMCallGovernor.CircuitState.CLOSED);
+    }
+
+    @Test
+    void doesNotRetryRejectedRequests() {
+        statuses.add(400);
+        LLMCallGovernor governor = governor(4, 10);
+
+        assertThatThrownBy(() -> governor.execute(100, this::call).block())
+                .isInstanceOf(WebClientResponseException.BadRequest.class);
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void opensCircuitAfterConsecutiveFailuresAndClosesAfterATrial() throws InterruptedException {
+        statuses.add(500);
+        statuses.add(502);
+        LLMCallGovernor governor = governor(1, 2);
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> governor.execute(100, this::call).block())
+                    .isInstanceOf(WebClientResponseException.class);
+        }
+        assertThatThrownBy(() -> governor.execute(100, this::call).block())
+                .isInstanceOf(LLMCallGovernor.CircuitOpenException.class);
+        assertThat(requests).hasValue(2);
+        assertThat(governor.getCircuitState()).isEqualTo(LLMCallGovernor.CircuitState.OPEN);
+
+        Thread.sleep(250);
+
+        assertThat(governor.execute(100, this::call).block()).isEqualTo("ok");
+        assertThat(governor.getCircuitState()).isEqualTo(LLMCallGovernor.CircuitState.CLOSED);
+    }
+
+    @Test
+    void delaysCallsOnceTheTokenBucketIsSpent() {
+        LLMCallGovernor governor = new LLMCallGovernor(1000, 600, 1, Duration.ofMillis(1),
+                Duration.ofMillis(1), 5, Duration.ofSeconds(1));
+
+        assertThat(governor.reserve(600)).isZero();
+        // 600 tokens per minute refill 60 tokens in about six seconds
+        assertThat(governor.reserve(60)).isBetween(Duration.ofMillis(5900), Duration.ofMillis(6000));
+
+        governor.recordUsage(600, 300);
+        assertThat(governor.reserve(1)).isZero();
+    }
+
+    @Test
+    void cancellingATrialDuringTheLimiterWaitReleasesItAndItsReservation() throws InterruptedException {
+        // One request per minute: after the failed call every attempt waits about a minute
+        LLMCallGovernor governor = new LLMCallGovernor(1, 1_000_000, 1, Duration.ofMillis(10),
+                Duration.ofMillis(50), 1, Duration.ofMillis(100));
+        statuses.add(500);
+        assertThatThrownBy(() -> governor.execute(100, this::call).block())
+                .isInstanceOf(WebClientResponseException.class);
+        Thread.sleep(150);
+
+        // The trial waits for the limiter, then its subscriber leaves
+        governor.execute(100, this::call).subscribe().dispose();
+
+        // The next caller becomes the trial instead of failing fast, and waits its turn
+        StepVerifier.create(governor.execute(100, this::call))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+        assertThat(governor.getCircuitState()).isEqualTo(LLMCallGovernor.CircuitState.HALF_OPEN);
+        assertThat(requests).hasValue(1);
+        // Both cancelled attempts gave their request back, so only the failed call is owed
+        assertThat(governor.reserve(0)).isLessThan(Duration.ofSeconds(61));
+    }
+
+    private Mono<String> call() {
+        return webClient.post().uri("/v1/messages").retrieve().bodyToMono(String.class);
+    }
+
+    private static LLMCallGovernor governor(int maxAttempts, int failureThreshold) {
+        return new LLMCallGovernor(1000, 1_000_000, maxAttempts, Duration.ofMillis(10), Duration.ofMillis(50),
+                failureThreshold, Duration.ofMillis(200));
+    }
+}
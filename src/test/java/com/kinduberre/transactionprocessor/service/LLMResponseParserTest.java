@@ -0,0 +1,99 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LLMResponseParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LLMResponseParser parser = new LLMResponseParser(objectMapper);
+
+    @Test
+    void readsAnthropicEnvelope() {
+        LLMParseResult result = parser.parse(anthropic(
+                "[{\"transaction_id\":\"TX1\",\"amount\":{\"value\":100.00,\"currency\":\"KES\"},\"date\":\"12/3/24\"},"
+                        + "{\"transaction_id\":\"TX2\",\"amount\":{\"value\":50,\"currency\":\"KES\"}}]",
+                "end_turn"));
+
+        assertThat(result.transactions()).extracting("transactionId").containsExactly("TX1", "TX2");
+        assertThat(result.transactions().get(0).getTransactionDate()).isEqualTo("12/3/24");
+        assertThat(result.errors()).isEmpty();
+        assertThat(result.truncated()).isFalse();
+        assertThat(result.inputTokens()).isEqualTo(120);
+        assertThat(result.outputTokens()).isEqualTo(40);
+    }
+
+    @Test
+    void keepsCompleteElementsOfATruncatedReply() {
+        LLMParseResult result = parser.parse(anthropic(
+                "[{\"transaction_id\":\"TX1\"},{\"transaction_id\":\"TX2\"},{\"transaction_id\":\"TX", "max_tokens"));
+
+        assertThat(result.transactions()).extracting("transactionId").containsExactly("TX1", "TX2");
+        assertThat(result.truncated()).isTrue();
+        assertThat(result.errors()).extracting(ProcessingError::getErrorCode).containsExactly("TRUNCATED_RESPONSE");
+    }
+
+    @Test
+    void rejectsInvalidElementsWithoutLosingTheRest() {
+        LLMParseResult result = parser.parse(anthropic(
+                "[{\"transaction_id\":\"TX1\",\"amount\":{\"value\":\"lots\"}},\"oops\",{},{\"transaction_id\":\"TX2\"}]",
+                "end_turn"));
+
+        assertThat(result.transactions()).extracting("transactionId").containsExactly("TX2");
+        assertThat(result.errors()).extracting(ProcessingError::getErrorCode)
+                .containsExactly("INVALID_ELEMENT", "INVALID_ELEMENT", "EMPTY_ELEMENT");
+        assertThat(result.errors()).allSatisfy(e -> assertThat(e.getErrorType()).isEqualTo("PARSE_ERROR"));
+    }
+
+    @Test
+    void skipsProseAndCodeFences() {
+        LLMParseResult result = parser.parse(anthropic(
+                "Here are the transactions:\n```json\n[{\"transaction_id\":\"TX1\"}]\n```", "end_turn"));
+
+        assertThat(result.transactions()).extracting("transactionId").containsExactly("TX1");
+        assertThat(result.errors()).isEmpty();
+    }
+
+    @Test
+    void skipsBracketsInProse() {
+        LLMParseResult result = parser.parse(anthropic(
+                "Extracted [2 of 2] messages {as requested}:\n[{\"transaction_id\":\"TX1\"},{\"transaction_id\":\"TX2\"}]",
+                "end_turn"));
+
+        assertThat(result.transactions()).extracting("transactionId").containsExactly("TX1", "TX2");
+        assertThat(result.errors()).isEmpty();
+    }
+
+    @Test
+    void readsASingleObjectAfterProse() {
+        LLMParseResult result = parser.parse(anthropic(
+                "Only one [sic] transaction: {\"transaction_id\":\"TX1\"}", "end_turn"));
+
+        assertThat(result.transactions()).extracting("transactionId").containsExactly("TX1");
+        assertThat(result.errors()).isEmpty();
+    }
+
+    @Test
+    void reportsRepliesWithoutJson() {
+        LLMParseResult result = parser.parse(anthropic("I could not find any transactions.", "end_turn"));
+
+        assertThat(result.transactions()).isEmpty();
+        assertThat(result.errors()).extracting(ProcessingError::getErrorCode).containsExactly("NO_JSON");
+        assertThat(parser.parse("not json").errors()).extracting(ProcessingError::getErrorCode)
+                .containsExactly("MALFORMED_RESPONSE");
+    }
+
+    private String anthropic(String text, String stopReason) {
+        return objectMapper.createObjectNode()
+                .put("id", "msg_1")
+                .<ObjectNode>set("content", objectMapper.createArrayNode()
+                        .add(objectMapper.createObjectNode().put("type", "text").put("text", text)))
+                .put("stop_reason", stopReason)
+                .set("usage", objectMapper.createObjectNode().put("input_tokens", 120).put("output_tokens", 40))
+                .toString();
+    }
+}
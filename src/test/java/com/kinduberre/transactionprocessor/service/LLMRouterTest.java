@@ -0,0 +1,62 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LLMRouterTest {
+
+    private final LLMRouter router = new LLMRouter("large", "small", 2, true, "fallback", 0.9,
+            Duration.ofSeconds(20), Duration.ofMillis(100));
+
+    @Test
+    void smallBatchesGoToTheFallbackModel() {
+        assertThat(router.modelFor(List.of("a", "b"))).isEqualTo("small");
+        assertThat(router.modelFor(List.of("a", "b", "c"))).isEqualTo("large");
+        assertThat(router.hedgeModelFor("large")).isEqualTo("small");
+    }
+
+    @Test
+    void hedgeDelayFollowsTheLatencyPercentile() {
+        assertThat(router.hedgeDelay("large")).isEqualTo(Duration.ofSeconds(20));
+
+        for (int millis = 1; millis <= 100; millis++) {
+            router.recordLatency("large", Duration.ofMillis(millis * 10L).toNanos());
+        }
+
+        assertThat(router.hedgeDelay("large")).isEqualTo(Duration.ofMillis(900));
+        // Other models keep their own history
+        assertThat(router.hedgeDelay("small")).isEqualTo(Duration.ofSeconds(20));
+    }
+
+    @Test
+    void hedgeDelayIsNeverBelowTheMinimum() {
+        Collections.nCopies(LLMRouter.MIN_SAMPLES, Duration.ofMillis(5).toNanos())
+                .forEach(nanos -> router.recordLatency("large", nanos));
+
+        assertThat(router.hedgeDelay("large")).isEqualTo(Duration.ofMillis(100));
+    }
+
+    @Test
+    void onlyTheOldestLatenciesAreForgotten() {
+        for (int i = 0; i < LLMRouter.WINDOW_SIZE; i++) {
+            router.recordLatency("large", Duration.ofSeconds(10).toNanos());
+        }
+        for (int i = 0; i < LLMRouter.WINDOW_SIZE; i++) {
+            router.recordLatency("large", Duration.ofSeconds(1).toNanos());
+        }
+
+        assertThat(router.hedgeDelay("large")).isEqualTo(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void rejectsUnknownHedgeTarget() {
+        assertThatThrownBy(() -> new LLMRouter("large", "", 0, true, "other", 0.9, Duration.ZERO, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
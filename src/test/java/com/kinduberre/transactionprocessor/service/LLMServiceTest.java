@@ -0,0 +1,369 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LLMServiceTest {
+
+    private static final Pattern MESSAGE_LINE = Pattern.compile("^Message \\d+: (\\S+)", Pattern.MULTILINE);
+
+    private static final FairBatchScheduler.Owner OWNER =
+            new FairBatchScheduler.Owner("alice", FairBatchScheduler.Lane.BULK);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Queue<String> models = new ConcurrentLinkedQueue<>();
+
+    // How the stub answers a call, by the model and the transaction codes of its messages
+    private volatile Responder responder = (model, codes) -> StubReply.transactions(codes, 100);
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1/messages", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void dispatchesBatchesConcurrentlyUpToTheInFlightCap() {
+        LLMService service = service(3, 2);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 12), listener, OWNER);
+
+        assertThat(listener.planned).isEqualTo(6);
+        assertThat(requests).hasValue(6);
+        assertThat(maxInFlight).hasValue(3);
+        assertThat(listener.transactionIds()).containsExactlyInAnyOrderElementsOf(codes("A", 12));
+        assertThat(listener.failed).isEmpty();
+    }
+
+    @Test
+    void aFailedBatchDoesNotFailTheOthers() {
+        // 400 is not retried, so the batch holding BAD1 fails on the first call
+        responder = (model, codes) -> codes.contains("BAD1")
+                ? StubReply.status(400)
+                : StubReply.transactions(codes, 20);
+        LLMService service = service(4, 2);
+        RecordingListener listener = new RecordingListener();
+        List<String> messages = new ArrayList<>(messages("A", 5));
+        messages.add(2, "BAD1 Confirmed. Ksh100.00 sent");
+
+        service.streamTransactionMessages(messages, listener, OWNER);
+
+        assertThat(listener.failed).hasSize(1);
+        assertThat(listener.failed.get(0))
+                .containsExactly("BAD1 Confirmed. Ksh100.00 sent", "A3 Confirmed. Ksh100.00 sent");
+        assertThat(listener.transactionIds()).containsExactlyInAnyOrder("A1", "A2", "A4", "A5");
+    }
+
+    @Test
+    void reportsBatchesInCompletionOrder() {
+        responder = (model, codes) -> StubReply.transactions(codes, codes.contains("A1") ? 600 : 50);
+        LLMService service = service(4, 2);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 6), listener, OWNER);
+
+        // The first batch is the slowest, so it is reported last
+        assertThat(listener.completed).hasSize(3);
+        assertThat(listener.completed.get(2)).extracting(TransactionData::getTransactionId)
+                .containsExactly("A1", "A2");
+        assertThat(listener.transactionIds()).containsExactlyInAnyOrderElementsOf(codes("A", 6));
+    }
+
+    @Test
+    void sequentialDispatchSendsOneBatchAtATime() {
+        LLMService service = service(4, 2);
+        ReflectionTestUtils.setField(service, "concurrentBatches", false);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 6), listener, OWNER);
+
+        assertThat(maxInFlight).hasValue(1);
+        assertThat(listener.transactionIds()).containsExactlyElementsOf(codes("A", 6));
+    }
+
+    @Test
+    void truncatedBatchIsRetriedAsTwoHalvesAndMerged() {
+        // Batches of more than two messages run out of output tokens after the first transaction
+        responder = (model, codes) -> codes.size() > 2
+                ? new StubReply(200, 0, codes.subList(0, 1), "max_tokens")
+                : StubReply.transactions(codes, 0);
+        LLMService service = service(4, 10);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 4), listener, OWNER);
+
+        assertThat(requests).hasValue(3);
+        assertThat(listener.completed).singleElement().satisfies(transactions ->
+                assertThat(transactions).extracting(TransactionData::getTransactionId)
+                        .containsExactly("A1", "A2", "A3", "A4"));
+        assertThat(listener.failed).isEmpty();
+    }
+
+    @Test
+    void failedHalfIsReportedWithItsOwnCause() {
+        responder = (model, codes) -> {
+            if (codes.size() > 2) {
+                return new StubReply(200, 0, codes.subList(0, 1), "max_tokens");
+            }
+            return codes.contains("A3") ? StubReply.status(400) : StubReply.transactions(codes, 0);
+        };
+        LLMService service = service(4, 10);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 4), listener, OWNER);
+
+        assertThat(listener.failed).singleElement().satisfies(messages -> assertThat(messages).hasSize(4));
+        // Wrapped once, not once per level of splitting
+        assertThat(listener.errors).singleElement().satisfies(error -> {
+            assertThat(error).hasMessage("Failed to process transactions with LLM");
+            assertThat(error.getCause()).isInstanceOf(WebClientResponseException.BadRequest.class);
+        });
+    }
+
+    @Test
+    void emptyReplyFromThePrimaryIsNotHedged() throws InterruptedException {
+        responder = (model, codes) -> StubReply.transactions(List.of(), 0);
+        LLMService service = hedgingService(16);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 2), listener, OWNER);
+        // Past the hedge delay, in case a hedge was still on its way
+        Thread.sleep(400);
+
+        assertThat(requests).hasValue(1);
+        assertThat(listener.completed).singleElement().satisfies(transactions -> assertThat(transactions).isEmpty());
+        assertThat(listener.failed).isEmpty();
+    }
+
+    @Test
+    void slowPrimaryIsHedged() {
+        responder = (model, codes) -> StubReply.transactions(codes, model.equals("large") ? 2000 : 50);
+        LLMService service = hedgingService(16);
+        RecordingListener listener = new RecordingListener();
+
+        long start = System.nanoTime();
+        service.streamTransactionMessages(messages("A", 2), listener, OWNER);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+        assertThat(models).containsExactly("large", "small");
+        assertThat(listener.transactionIds()).containsExactly("A1", "A2");
+    }
+
+    @Test
+    void batchFailsWhenBothAttemptsFail() {
+        responder = (model, codes) -> model.equals("large")
+                ? new StubReply(400, 500, List.of(), null)
+                : StubReply.status(400);
+        LLMService service = hedgingService(16);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 2), listener, OWNER);
+
+        assertThat(requests).hasValue(2);
+        assertThat(listener.completed).isEmpty();
+        assertThat(listener.errors).singleElement().satisfies(error -> {
+            assertThat(error).hasMessage("Failed to process transactions with LLM");
+            assertThat(error.getCause()).isInstanceOf(WebClientResponseException.BadRequest.class);
+        });
+    }
+
+    @Test
+    void hedgeWaitsForASchedulerSlot() {
+        responder = (model, codes) -> StubReply.transactions(codes, model.equals("large") ? 600 : 0);
+        // The primary holds the only slot, so the hedge never gets to run
+        LLMService service = hedgingService(1);
+        RecordingListener listener = new RecordingListener();
+
+        service.streamTransactionMessages(messages("A", 2), listener, OWNER);
+
+        assertThat(requests).hasValue(1);
+        assertThat(models).containsExactly("large");
+        assertThat(listener.transactionIds()).containsExactly("A1", "A2");
+    }
+
+    private LLMService hedgingService(int schedulerSlots) {
+        // Hedges go to the small model after 300ms
+        return service(4, 10, schedulerSlots, new LLMRouter("large", "small", 0, true, "fallback", 0.9,
+                Duration.ofMillis(300), Duration.ofMillis(300)));
+    }
+
+    private LLMService service(int maxInFlightBatches, int maxMessagesPerBatch) {
+        return service(maxInFlightBatches, maxMessagesPerBatch, 16, new LLMRouter("large", "small", 0, false,
+                "same", 0.9, Duration.ofSeconds(20), Duration.ofMillis(100)));
+    }
+
+    private LLMService service(int maxInFlightBatches, int maxMessagesPerBatch, int schedulerSlots,
+                               LLMRouter router) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LLMService service = new LLMService(
+                WebClient.builder(),
+                new LLMResponseParser(objectMapper),
+                new TokenBudgetBatcher(100_000, 100_000, 0.8, 10, maxMessagesPerBatch),
+                new LLMCallGovernor(1000, 10_000_000, 1, Duration.ofMillis(10), Duration.ofMillis(50),
+                        100, Duration.ofSeconds(1)),
+                new ExtractionMetrics(registry),
+                new ExtractionPrompt("compact", false, 1024, new String[]{"haiku=2048"}),
+                new FairBatchScheduler(schedulerSlots, 50, 2, registry),
+                router);
+        ReflectionTestUtils.setField(service, "apiUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/v1/messages");
+        ReflectionTestUtils.setField(service, "apiKey", "test-key");
+        ReflectionTestUtils.setField(service, "maxTokens", 4000);
+        ReflectionTestUtils.setField(service, "logBodies", false);
+        ReflectionTestUtils.setField(service, "concurrentBatches", true);
+        ReflectionTestUtils.setField(service, "maxInFlightBatches", maxInFlightBatches);
+        return service;
+    }
+
+    private static List<String> messages(String prefix, int count) {
+        List<String> messages = new ArrayList<>();
+        for (String code : codes(prefix, count)) {
+            messages.add(code + " Confirmed. Ksh100.00 sent");
+        }
+        return messages;
+    }
+
+    private static List<String> codes(String prefix, int count) {
+        List<String> codes = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            codes.add(prefix + i);
+        }
+        return codes;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int open = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(open, Math::max);
+        try {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            List<String> codes = new ArrayList<>();
+            Matcher matcher = MESSAGE_LINE.matcher(request.path("messages").path(0).path("content").asText());
+            while (matcher.find()) {
+                codes.add(matcher.group(1));
+            }
+
+            String model = request.path("model").asText();
+            models.add(model);
+            StubReply reply = responder.reply(model, codes);
+            Thread.sleep(reply.delayMillis());
+            String body = reply.status() == 200 ? anthropicReply(reply) : "{\"type\":\"error\"}";
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private String anthropicReply(StubReply reply) {
+        ArrayNode array = objectMapper.createArrayNode();
+        for (String code : reply.transactionIds()) {
+            ObjectNode transaction = array.addObject()
+                    .put("transaction_id", code)
+                    .put("status", "Confirmed")
+                    .put("type", "send_money");
+            transaction.putObject("amount").put("value", 100).put("currency", "KSH");
+        }
+        ObjectNode body = objectMapper.createObjectNode()
+                .put("type", "message")
+                .put("stop_reason", reply.stopReason());
+        body.putArray("content").addObject().put("type", "text").put("text", array.toString());
+        body.putObject("usage").put("input_tokens", 100).put("output_tokens", 10);
+        return body.toString();
+    }
+
+    @FunctionalInterface
+    interface Responder {
+        StubReply reply(String model, List<String> codes);
+    }
+
+    record StubReply(int status, long delayMillis, List<String> transactionIds, String stopReason) {
+
+        static StubReply transactions(List<String> codes, long delayMillis) {
+            return new StubReply(200, delayMillis, codes, "end_turn");
+        }
+
+        static StubReply status(int status) {
+            return new StubReply(status, 0, List.of(), null);
+        }
+    }
+
+    private static final class RecordingListener implements BatchListener {
+        private final List<List<TransactionData>> completed = Collections.synchronizedList(new ArrayList<>());
+        private final List<List<String>> failed = Collections.synchronizedList(new ArrayList<>());
+        private final List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        private int planned;
+
+        @Override
+        public void onBatchCompleted(List<String> messages, List<TransactionData> transactions) {
+            completed.add(transactions);
+        }
+
+        @Override
+        public void onBatchesPlanned(int totalBatches) {
+            planned = totalBatches;
+        }
+
+        @Override
+        public void onBatchFailed(List<String> messages, Throwable error) {
+            failed.add(messages);
+            errors.add(error);
+        }
+
+        List<String> transactionIds() {
+            return completed.stream().flatMap(List::stream).map(TransactionData::getTransactionId).toList();
+        }
+    }
+}
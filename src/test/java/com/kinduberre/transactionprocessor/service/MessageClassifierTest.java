@@ -0,0 +1,63 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageClassifierTest {
+
+    private final MessageClassifier classifier = new MessageClassifier();
+
+    @Test
+    void confirmationsAreTransactions() {
+        assertThat(label("TJ12ABC3XY Confirmed. Ksh1,000.00 sent to JOHN DOE 0712345678 on 12/3/24 at 2:15 PM."))
+                .isEqualTo(MessageClassifier.Label.TRANSACTION);
+        // Fuliza loans and appended promotions still carry a confirmation code
+        assertThat(label("QK0000001X Confirmed. Fuliza M-PESA amount is Ksh 150.00. Interest charged Ksh 1.00. "
+                + "To check your limit dial *234*0#."))
+                .isEqualTo(MessageClassifier.Label.TRANSACTION);
+        assertThat(label("You have received Ksh500.00 from JANE DOE on 12/3/24"))
+                .isEqualTo(MessageClassifier.Label.TRANSACTION);
+        // A confirmation is kept even when it mentions a failure
+        assertThat(label("TJ12ABC3XY Confirmed. Reversal of transaction TJ11ABC3XY that failed, Ksh1,000.00 is "
+                + "credited to your M-PESA account."))
+                .isEqualTo(MessageClassifier.Label.TRANSACTION);
+        // Promotional keywords only count as whole words
+        assertThat(label("You have received Ksh500.00 from CLICKMART OFFERTORY FUND on 12/3/24"))
+                .isEqualTo(MessageClassifier.Label.TRANSACTION);
+    }
+
+    @Test
+    void noticesAreSkippedWithTheirReason() {
+        assertThat(reason("Failed. You do not have enough money in your M-PESA account to send Ksh5,000.00."))
+                .isEqualTo(MessageClassifier.FAILED_TRANSACTION);
+        assertThat(reason("Transaction failed, insufficient funds to pay Ksh200.00 to NAIVAS."))
+                .isEqualTo(MessageClassifier.FAILED_TRANSACTION);
+        assertThat(reason("482913 is your M-PESA verification code. Do not share it with anyone."))
+                .isEqualTo(MessageClassifier.OTP);
+        assertThat(reason("Your Fuliza M-PESA limit is now Ksh 2,000.00."))
+                .isEqualTo(MessageClassifier.FULIZA_NOTICE);
+        assertThat(reason("Get 1GB for Ksh 50 valid for 24 hours! Dial *544# now. SMS STOP to 456 to opt out."))
+                .isEqualTo(MessageClassifier.PROMOTION);
+        assertThat(reason("Special offer: Ksh 100 off your next purchase, click the link to claim."))
+                .isEqualTo(MessageClassifier.PROMOTION);
+        assertThat(reason("Dear customer, M-PESA services will be unavailable tonight from 1 AM to 3 AM."))
+                .isEqualTo(MessageClassifier.NO_AMOUNT);
+    }
+
+    @Test
+    void unclearMessagesAreLeftForTheLlm() {
+        assertThat(label("Your account balance was Ksh 1,200.00 on 12/3/24 at 8:00 PM."))
+                .isEqualTo(MessageClassifier.Label.UNCERTAIN);
+    }
+
+    private MessageClassifier.Label label(String message) {
+        return classifier.classify(message).label();
+    }
+
+    private String reason(String message) {
+        MessageClassifier.Classification classification = classifier.classify(message);
+        assertThat(classification.label()).isEqualTo(MessageClassifier.Label.NON_TRANSACTION);
+        return classification.reason();
+    }
+}
@@ -0,0 +1,82 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.kinduberre.transactionprocessor.service.TransactionFixtures.transaction;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageResultsTest {
+
+    private static final String FIRST = "QA11111111 Confirmed. Ksh100.00 sent to JOHN DOE";
+    private static final String SECOND = "QB22222222 Confirmed. Ksh200.00 paid to NAIVAS";
+    private static final String THIRD = "QC33333333 Confirmed. You have received Ksh300.00";
+
+    @Test
+    void keepsInputOrderWhateverOrderResultsArriveIn() {
+        MessageResults results = new MessageResults(List.of(FIRST, SECOND, THIRD));
+
+        results.putBatch(List.of(THIRD, FIRST), List.of(transaction("QA11111111"), transaction("QC33333333")));
+        results.put(SECOND, transaction("QB22222222"));
+
+        assertThat(results.inOrder()).extracting(TransactionData::getTransactionId)
+                .containsExactly("QA11111111", "QB22222222", "QC33333333");
+    }
+
+    @Test
+    void pairsResultsWithoutCodesByPositionWhenCountsAgree() {
+        MessageResults results = new MessageResults(List.of(FIRST, SECOND, THIRD));
+
+        results.putBatch(List.of(FIRST, SECOND, THIRD),
+                List.of(transaction(null), transaction("QA11111111"), transaction("unknown")));
+
+        // QA11111111 names the first message, the other two fill the rest in order
+        assertThat(results.inOrder()).extracting(TransactionData::getTransactionId)
+                .containsExactly("QA11111111", null, "unknown");
+    }
+
+    @Test
+    void matchesCodesOnlyAsWholeWords() {
+        int[] owners = MessageResults.matchByCode(List.of("XQA11111111 Confirmed", FIRST),
+                List.of(transaction("QA11111111"), transaction("QA1111")));
+
+        assertThat(owners).containsExactly(1, -1);
+    }
+
+    @Test
+    void attributesOnlyResultsWhoseCodeIsInTheirMessage() {
+        // The second message was dropped and the third split in two: the count still matches
+        List<TransactionData> reply = List.of(transaction("QA11111111"), transaction("QC33333333"),
+                transaction("QC33333333"));
+
+        assertThat(MessageResults.attributeByCode(List.of(FIRST, SECOND, THIRD), reply))
+                .containsOnlyKeys(0)
+                .containsValue(reply.get(0));
+    }
+
+    @Test
+    void repeatsShareTheSlotOfTheFirstOccurrence() {
+        MessageResults results = new MessageResults(List.of(FIRST, SECOND, "  " + FIRST));
+
+        assertThat(results.distinct()).containsExactly(FIRST, SECOND);
+        assertThat(results.duplicates()).isEqualTo(1);
+    }
+
+    @Test
+    void listsTheResultOfARepeatedMessageAtEachOccurrence() {
+        MessageResults results = new MessageResults(List.of(FIRST, SECOND, "  " + FIRST, FIRST));
+
+        results.putBatch(List.of(FIRST, SECOND), List.of(transaction("QA11111111"), transaction("QB22222222")));
+
+        assertThat(results.inOrder()).extracting(TransactionData::getTransactionId)
+                .containsExactly("QA11111111", "QB22222222", "QA11111111", "QA11111111");
+        assertThat(results.extracted()).extracting(TransactionData::getTransactionId)
+                .containsExactly("QA11111111", "QB22222222");
+        assertThat(results.withRepeats(List.of(SECOND, FIRST),
+                List.of(transaction("QA11111111"), transaction("QB22222222"))))
+                .extracting(TransactionData::getTransactionId)
+                .containsExactly("QA11111111", "QA11111111", "QA11111111", "QB22222222");
+    }
+}
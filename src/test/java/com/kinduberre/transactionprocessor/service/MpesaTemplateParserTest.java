@@ -0,0 +1,74 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.InstanceOfAssertFactories.MAP;
+
+class MpesaTemplateParserTest {
+
+    private final MpesaTemplateParser parser = new MpesaTemplateParser();
+
+    @Test
+    void parsesSendMoney() {
+        TransactionData t = parser.parse("TJ12ABC3XY Confirmed. Ksh1,000.00 sent to JOHN DOE 0712345678 on 12/3/24 "
+                + "at 2:15 PM. New M-PESA balance is Ksh5,000.00. Transaction cost, Ksh13.00. "
+                + "Amount you can transact within the day is 298,000.00.");
+
+        assertThat(t).isNotNull();
+        assertThat(t.getTransactionId()).isEqualTo("TJ12ABC3XY");
+        assertThat(t.getType()).isEqualTo("send_money");
+        assertThat(t.getAmount().getValue()).isEqualByComparingTo("1000.00");
+        assertThat(t.getTransactionDate()).isEqualTo("12/3/24");
+        assertThat(t.getTransactionTime()).isEqualTo("2:15 PM");
+        assertThat(t.getMpesaBalance().getValue()).isEqualByComparingTo("5000.00");
+        assertThat(t.getTransactionCost().getValue()).isEqualByComparingTo("13.00");
+        assertThat(t.getDailyTransactionLimit().getRemaining()).isEqualByComparingTo(new BigDecimal("298000.00"));
+        assertThat(t.getRecipient()).asInstanceOf(MAP).containsEntry("name", "JOHN DOE").containsEntry("phone", "0712345678");
+    }
+
+    @Test
+    void parsesReceiveMoney() {
+        TransactionData t = parser.parse("TJ12ABC3XZ Confirmed.You have received Ksh500.00 from JANE DOE 0722000000 "
+                + "on 12/3/24 at 9:01 AM  New M-PESA balance is Ksh5,500.00.");
+
+        assertThat(t).isNotNull();
+        assertThat(t.getType()).isEqualTo("receive_money");
+        assertThat(t.getSender()).asInstanceOf(MAP).containsEntry("name", "JANE DOE").containsEntry("phone", "0722000000");
+    }
+
+    @Test
+    void parsesPaybillAndBankTransfer() {
+        TransactionData paybill = parser.parse("TJ12ABC3Y1 Confirmed. Ksh1,200.00 sent to KPLC PREPAID for account "
+                + "12345678 on 12/3/24 at 8:00 PM New M-PESA balance is Ksh3,800.00. Transaction cost, Ksh0.00.");
+        TransactionData bank = parser.parse("TJ12ABC3Y2 Confirmed. Ksh5,000.00 sent to EQUITY BANK for account "
+                + "0123456789 on 13/3/24 at 8:00 AM New M-PESA balance is Ksh800.00. Transaction cost, Ksh57.00.");
+
+        assertThat(paybill.getType()).isEqualTo("paybill");
+        assertThat(paybill.getRecipient()).asInstanceOf(MAP).containsEntry("account_number", "12345678");
+        assertThat(bank.getType()).isEqualTo("bank_transfer");
+    }
+
+    @Test
+    void parsesBuyGoodsAndMshwari() {
+        TransactionData goods = parser.parse("TJ12ABC3Y3 Confirmed. Ksh250.00 paid to NAIVAS SUPERMARKET. on 12/3/24 "
+                + "at 6:30 PM.New M-PESA balance is Ksh3,550.00. Transaction cost, Ksh0.00.");
+        TransactionData mshwari = parser.parse("TJ12ABC3Y4 Confirmed.Ksh1,000.00 transferred to M-Shwari account on "
+                + "12/3/24 at 10:00 AM. M-PESA balance is Ksh2,550.00 .New M-Shwari saving account balance is "
+                + "Ksh11,000.00. Transaction cost Ksh.0.00");
+
+        assertThat(goods.getType()).isEqualTo("merchant_payment");
+        assertThat(goods.getMerchant()).isEqualTo("NAIVAS SUPERMARKET");
+        assertThat(mshwari.getType()).isEqualTo("internal_transfer");
+        assertThat(mshwari.getMpesaBalance().getValue()).isEqualByComparingTo("2550.00");
+    }
+
+    @Test
+    void leavesUnknownMessagesForTheLlm() {
+        assertThat(parser.parse("Your one-time password is 123456")).isNull();
+        assertThat(parser.parse("TJ12ABC3Y5 Confirmed. Fuliza M-PESA amount is Ksh 50.00.")).isNull();
+    }
+}
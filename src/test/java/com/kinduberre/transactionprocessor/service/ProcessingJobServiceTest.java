@@ -0,0 +1,195 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.config.JobExecutorConfig;
+import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.JobStatus;
+import com.kinduberre.transactionprocessor.dto.JobStatusResponse;
+import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProcessingJobServiceTest {
+
+    // One job runs at a time and one more can wait for it
+    private final ThreadPoolTaskExecutor executor = new JobExecutorConfig().jobExecutor(1, 1);
+    private final StubProcessingService processing = new StubProcessingService();
+
+    @AfterEach
+    void stopExecutor() {
+        processing.release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void submittedJobRunsAndReportsItsResult() throws InterruptedException {
+        ProcessingJobService jobs = jobService(Duration.ofHours(1));
+        processing.release.countDown();
+
+        JobStatusResponse submitted = jobs.submit(request("session-1"));
+        assertThat(submitted.getSessionId()).isEqualTo("session-1");
+
+        JobStatusResponse done = awaitStatus(jobs, "session-1", JobStatus.COMPLETED);
+        assertThat(done.getResult().getSessionId()).isEqualTo("session-1");
+        assertThat(done.getBatchesTotal()).isEqualTo(2);
+        assertThat(done.getBatchesCompleted()).isEqualTo(2);
+        assertThat(done.getCompletedAt()).isNotNull();
+    }
+
+    @Test
+    void requestWithoutSessionGetsOne() {
+        ProcessingJobService jobs = jobService(Duration.ofHours(1));
+
+        JobStatusResponse submitted = jobs.submit(new BulkTransactionRequest(List.of("message")));
+
+        assertThat(submitted.getSessionId()).isNotBlank();
+        assertThat(jobs.getStatus(submitted.getSessionId())).isNotNull();
+    }
+
+    @Test
+    void secondJobForTheSameSessionIsAConflict() {
+        ProcessingJobService jobs = jobService(Duration.ofHours(1));
+        jobs.submit(request("session-1"));
+
+        assertThatThrownBy(() -> jobs.submit(request("session-1")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+    }
+
+    @Test
+    void jobIsRejectedWhenTheQueueIsFull() throws InterruptedException {
+        ProcessingJobService jobs = jobService(Duration.ofHours(1));
+        jobs.submit(request("running"));
+        awaitStatus(jobs, "running", JobStatus.RUNNING);
+        jobs.submit(request("queued"));
+
+        assertThatThrownBy(() -> jobs.submit(request("rejected")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        // The rejected session can be submitted again later
+        assertThat(jobs.getStatus("rejected")).isNull();
+        assertThat(jobs.getStatus("queued").getStatus()).isEqualTo(JobStatus.QUEUED);
+    }
+
+    @Test
+    void cancelledQueuedJobNeverRuns() throws InterruptedException {
+        ProcessingJobService jobs = jobService(Duration.ofHours(1));
+        jobs.submit(request("running"));
+        awaitStatus(jobs, "running", JobStatus.RUNNING);
+        jobs.submit(request("queued"));
+
+        assertThat(jobs.cancel("queued").getStatus()).isEqualTo(JobStatus.CANCELLED);
+        processing.release.countDown();
+        awaitStatus(jobs, "running", JobStatus.COMPLETED);
+
+        assertThat(processing.started).containsExactly("running");
+        assertThat(jobs.getStatus("queued").getStatus()).isEqualTo(JobStatus.CANCELLED);
+    }
+
+    @Test
+    void cancellingARunningJobInterruptsIt() throws InterruptedException {
+        ProcessingJobService jobs = jobService(Duration.ofHours(1));
+        jobs.submit(request("running"));
+        awaitStatus(jobs, "running", JobStatus.RUNNING);
+
+        assertThat(jobs.cancel("running").getStatus()).isEqualTo(JobStatus.CANCELLED);
+
+        assertThat(processing.interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        // The interrupted run does not overwrite the cancellation
+        assertThat(jobs.getStatus("running").getStatus()).isEqualTo(JobStatus.CANCELLED);
+        assertThat(jobs.cancel("unknown")).isNull();
+    }
+
+    @Test
+    void finishedResultsExpire() throws InterruptedException {
+        ProcessingJobService jobs = jobService(Duration.ZERO);
+        processing.release.countDown();
+        jobs.submit(request("finished"));
+        awaitStatus(jobs, "finished", JobStatus.COMPLETED);
+        Thread.sleep(5);
+
+        jobs.expireResults();
+
+        assertThat(jobs.getStatus("finished")).isNull();
+    }
+
+    @Test
+    void sweepKeepsUnfinishedJobs() throws InterruptedException {
+        ProcessingJobService jobs = jobService(Duration.ZERO);
+        jobs.submit(request("running"));
+        awaitStatus(jobs, "running", JobStatus.RUNNING);
+
+        jobs.expireResults();
+
+        assertThat(jobs.getStatus("running")).isNotNull();
+    }
+
+    private ProcessingJobService jobService(Duration resultTtl) {
+        executor.initialize();
+        return new ProcessingJobService(processing, executor,
+                new JobJournal(new ObjectMapper(), false, "unused"), resultTtl);
+    }
+
+    private static BulkTransactionRequest request(String sessionId) {
+        BulkTransactionRequest request = new BulkTransactionRequest(List.of("message a", "message b"));
+        request.setSessionId(sessionId);
+        return request;
+    }
+
+    private static JobStatusResponse awaitStatus(ProcessingJobService jobs, String sessionId, JobStatus status)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        JobStatusResponse response = jobs.getStatus(sessionId);
+        while (response.getStatus() != status && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            response = jobs.getStatus(sessionId);
+        }
+        assertThat(response.getStatus()).isEqualTo(status);
+        return response;
+    }
+
+    /**
+     * Reports one batch per message once {@link #release} opens.
+     */
+    private static final class StubProcessingService extends TransactionProcessingService {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+        private final Queue<String> started = new ConcurrentLinkedQueue<>();
+
+        private StubProcessingService() {
+            super(null, null, null, null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public ProcessingResponse processTransactionsBulk(BulkTransactionRequest request, BatchListener progress,
+                                                          List<JobJournal.CompletedBatch> completed) {
+            started.add(request.getSessionId());
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw new RuntimeException("Batch processing interrupted", e);
+            }
+            progress.onBatchesPlanned(request.getMessages().size());
+            for (String message : request.getMessages()) {
+                progress.onBatchCompleted(List.of(message), List.of());
+            }
+            ProcessingResponse response = new ProcessingResponse();
+            response.setSessionId(request.getSessionId());
+            return response;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingResponse;
+import com.kinduberre.transactionprocessor.dto.ResponseView;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResponseProjectionTest {
+
+    @Test
+    void pagesThroughTransactionsWithCursors() {
+        ProcessingResponse response = response(5);
+
+        ProcessingResponse first = ResponseProjection.project(response, ResponseView.FULL, null, 2);
+        ProcessingResponse second = ResponseProjection.project(response, ResponseView.FULL, first.getNextCursor(), 2);
+        ProcessingResponse last = ResponseProjection.project(response, ResponseView.FULL, second.getNextCursor(), 2);
+
+        assertThat(first.getTransactions()).extracting(TransactionData::getTransactionId).containsExactly("T0", "T1");
+        assertThat(second.getTransactions()).extracting(TransactionData::getTransactionId).containsExactly("T2", "T3");
+        assertThat(last.getTransactions()).extracting(TransactionData::getTransactionId).containsExactly("T4");
+        assertThat(last.getNextCursor()).isNull();
+        assertThat(response.getTransactions()).hasSize(5);
+        assertThat(response.getNextCursor()).isNull();
+    }
+
+    @Test
+    void idsViewListsOnlyTransactionIds() {
+        ProcessingResponse projected = ResponseProjection.project(response(3), ResponseView.IDS, null, null);
+
+        assertThat(projected.getTransactions()).isNull();
+        assertThat(projected.getTransactionIds()).containsExactly("T0", "T1", "T2");
+        assertThat(projected.getNextCursor()).isNull();
+    }
+
+    @Test
+    void statsViewDropsTransactionsAndErrors() {
+        ProcessingResponse projected = ResponseProjection.project(response(3), ResponseView.STATS, null, 1);
+
+        assertThat(projected.getTransactions()).isNull();
+        assertThat(projected.getTransactionIds()).isNull();
+        assertThat(projected.getErrors()).isNull();
+        assertThat(projected.getSuccessfullyProcessed()).isEqualTo(3);
+    }
+
+    @Test
+    void fullViewWithoutPagingReturnsTheResponseAsIs() {
+        ProcessingResponse response = response(3);
+
+        assertThat(ResponseProjection.project(response, ResponseView.FULL)).isSameAs(response);
+    }
+
+    @Test
+    void rejectsMalformedCursorsAndLimits() {
+        ProcessingResponse response = response(3);
+
+        assertThatThrownBy(() -> ResponseProjection.project(response, ResponseView.FULL, "not-a-cursor", 2))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> ResponseProjection.project(response, ResponseView.FULL,
+                ResponseProjection.encode(-1), 2))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> ResponseProjection.project(response, ResponseView.FULL, null, 0))
+                .isInstanceOf(ResponseStatusException.class);
+    }
+
+    private static ProcessingResponse response(int count) {
+        List<TransactionData> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TransactionData transaction = new TransactionData();
+            transaction.setTransactionId("T" + i);
+            transactions.add(transaction);
+        }
+        ProcessingResponse response = new ProcessingResponse("session-1", transactions);
+        response.setTotalMessages(count);
+        response.setSuccessfullyProcessed(count);
+        response.setErrors(new ArrayList<>());
+        return response;
+    }
+}
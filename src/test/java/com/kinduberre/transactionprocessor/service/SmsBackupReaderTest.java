@@ -0,0 +1,74 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SmsBackupReaderTest {
+
+    private final SmsBackupReader reader = new SmsBackupReader(new String[]{"MPESA", "M-PESA"}, 64, 128);
+
+    @Test
+    void readsMpesaEntriesFromAndroidBackupXml() throws IOException {
+        String xml = """
+                <?xml version='1.0' encoding='UTF-8' standalone='yes' ?>
+                <smses count="3">
+                  <sms protocol="0" address="MPESA" date="1710230000000" type="1" body="TJ1 Confirmed. Ksh10.00 sent to A &amp; B" />
+                  <sms protocol="0" address="+254712345678" date="1710230000001" type="1" body="Hi there" />
+                  <sms protocol="0" address="M-Pesa" date="1710230000002" type="1" body="TJ2 Confirmed.&#10;Second line" />
+                </smses>
+                """;
+
+        assertThat(read(xml, "sms-20240312.xml"))
+                .containsExactly("TJ1 Confirmed. Ksh10.00 sent to A & B", "TJ2 Confirmed.\nSecond line");
+    }
+
+    @Test
+    void readsQuotedMultiLineCsvFields() throws IOException {
+        String csv = "\uFEFFDate,Sender,Message\r\n"
+                + "2024-03-12,MPESA,\"TJ1 Confirmed. Ksh1,000.00 sent to \"\"JOHN\"\"\nNew balance\"\r\n"
+                + "2024-03-12,SAFARICOM,\"Buy bundles\"\r\n"
+                + "2024-03-13,MPESA,TJ2 Confirmed.\n";
+
+        assertThat(read(csv, "export.csv"))
+                .containsExactly("TJ1 Confirmed. Ksh1,000.00 sent to \"JOHN\"\nNew balance", "TJ2 Confirmed.");
+    }
+
+    @Test
+    void sniffsTheFormatWhenTheNameDoesNotTell() throws IOException {
+        assertThat(read("  <smses><sms address=\"MPESA\" body=\"TJ1\"/></smses>", "upload")).containsExactly("TJ1");
+        assertThat(read("address,body\nMPESA,TJ2\n", null)).containsExactly("TJ2");
+    }
+
+    @Test
+    void rejectsCsvWithoutSenderAndMessageColumns() {
+        assertThatThrownBy(() -> read("a,b\n1,2\n", "export.csv"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsCsvWithAnOverlongFieldOrRecord() {
+        // An unterminated quote would otherwise read the rest of the file into one field
+        assertThatThrownBy(() -> read("address,body\nMPESA,\"TJ1 " + "x".repeat(100) + "\n", "export.csv"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("field");
+        assertThatThrownBy(() -> read("address,body\nMPESA" + ",TJ1".repeat(40) + "\n", "export.csv"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("record");
+    }
+
+    private List<String> read(String content, String filename) throws IOException {
+        List<String> messages = new ArrayList<>();
+        InputStream input = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+        reader.read(input, filename, messages::add);
+        return messages;
+    }
+}
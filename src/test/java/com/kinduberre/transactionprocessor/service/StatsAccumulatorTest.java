@@ -0,0 +1,77 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.ProcessingStats;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsAccumulatorTest {
+
+    private final TransactionStatsService statsService = new TransactionStatsService();
+
+    @Test
+    void ordersDatesChronologicallyAcrossMonthsAndYears() {
+        ProcessingStats stats = statsService.calculateStats(List.of(
+                transaction("send_money", "9/12/23", "100.00", "1.00"),
+                transaction("receive_money", "10/1/24", "50.00", null),
+                transaction("send_money", "2/11/23", "20.00", "0.50")));
+
+        // As text "10/1/24" < "2/11/23" < "9/12/23"; as dates the range is Nov 2023 to Jan 2024
+        assertThat(stats.getDateRange()).isEqualTo("2/11/23 to 10/1/24");
+        assertThat(stats.getTotalSent()).isEqualByComparingTo("120.00");
+        assertThat(stats.getTotalReceived()).isEqualByComparingTo("50.00");
+        assertThat(stats.getTotalFees()).isEqualByComparingTo("1.50");
+        assertThat(stats.getTransactionTypes()).containsEntry("send_money", 2).containsEntry("receive_money", 1);
+    }
+
+    @Test
+    void mergedChunksMatchASinglePass() {
+        List<TransactionData> first = List.of(
+                transaction("paybill", "1/3/24", "1200.00", "0.00"),
+                transaction(null, null, null, null));
+        List<TransactionData> second = List.of(
+                transaction("bank_to_mpesa", "28/2/24", "10000.00", null),
+                transaction("merchant_payment", "5/3/24", "250.55", null));
+
+        ProcessingStats merged = statsService.accumulate(first).merge(statsService.accumulate(second)).toStats();
+        ProcessingStats single = statsService.calculateStats(
+                List.of(first.get(0), first.get(1), second.get(0), second.get(1)));
+
+        assertThat(merged).isEqualTo(single);
+        assertThat(merged.getTotalSent()).isEqualByComparingTo("1450.55");
+        assertThat(merged.getTransactionTypes()).containsEntry("unknown", 1);
+        assertThat(merged.getDateRange()).isEqualTo("28/2/24 to 5/3/24");
+    }
+
+    @Test
+    void outOfRangeAmountsAreSkippedWithoutFailingTheStats() {
+        ProcessingStats stats = statsService.calculateStats(List.of(
+                transaction("send_money", "1/3/24", "100.00", "1.00"),
+                transaction("send_money", "2/3/24", "1e30", "-99999999999999999999"),
+                transaction("receive_money", "3/3/24", "50.00", null)));
+
+        assertThat(stats.getTotalSent()).isEqualByComparingTo("100.00");
+        assertThat(stats.getTotalReceived()).isEqualByComparingTo("50.00");
+        assertThat(stats.getTotalFees()).isEqualByComparingTo("1.00");
+        // The row itself still counts
+        assertThat(stats.getTransactionTypes()).containsEntry("send_money", 2);
+        assertThat(stats.getDateRange()).isEqualTo("1/3/24 to 3/3/24");
+    }
+
+    private static TransactionData transaction(String type, String date, String amount, String cost) {
+        TransactionData transaction = new TransactionData();
+        transaction.setType(type);
+        transaction.setTransactionDate(date);
+        if (amount != null) {
+            transaction.setAmount(new TransactionData.AmountData(new BigDecimal(amount), "KSH"));
+        }
+        if (cost != null) {
+            transaction.setTransactionCost(new TransactionData.AmountData(new BigDecimal(cost), "KSH"));
+        }
+        return transaction;
+    }
+}
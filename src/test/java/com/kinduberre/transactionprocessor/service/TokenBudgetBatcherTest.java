@@ -0,0 +1,41 @@
+package com.kinduberre.transactionprocessor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenBudgetBatcherTest {
+
+    @Test
+    void packsShortMessagesUpToTheOutputBudget() {
+        // 4000 * 0.8 = 3200 output tokens / 200 per message = 16 messages per batch
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(100_000, 4000, 0.8, 200, 100);
+
+        List<List<String>> batches = batcher.createBatches(Collections.nCopies(40, "short sms"));
+
+        assertThat(batches).extracting(List::size).containsExactly(16, 16, 8);
+    }
+
+    @Test
+    void closesBatchesOnTheInputBudget() {
+        String longMessage = "x".repeat(300);
+        int perMessage = TokenBudgetBatcher.estimateInputTokens(longMessage);
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(perMessage * 3, 100_000, 1.0, 1, 100);
+
+        List<List<String>> batches = batcher.createBatches(Collections.nCopies(7, longMessage));
+
+        assertThat(batches).extracting(List::size).containsExactly(3, 3, 1);
+    }
+
+    @Test
+    void keepsAnOversizedMessageInItsOwnBatch() {
+        TokenBudgetBatcher batcher = new TokenBudgetBatcher(10, 4000, 0.8, 200, 100);
+
+        List<List<String>> batches = batcher.createBatches(List.of("x".repeat(500), "y"));
+
+        assertThat(batches).containsExactly(List.of("x".repeat(500)), List.of("y"));
+    }
+}
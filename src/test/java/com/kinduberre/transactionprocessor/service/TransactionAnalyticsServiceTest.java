@@ -0,0 +1,73 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.AnalyticsQuery;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionAnalyticsServiceTest {
+
+    private final AnalyticsQuery all = new AnalyticsQuery();
+
+    @Test
+    void queriesForUnknownUsersDoNotEvictStores() {
+        TransactionAnalyticsService analytics = new TransactionAnalyticsService(persistence(false, user -> { }), 2);
+        analytics.index("alice", List.of(transaction("QA11111111")));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(analytics.query("stranger" + i, all).getTransactionsScanned()).isZero();
+        }
+
+        assertThat(analytics.query("alice", all).getTransactionsScanned()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsTransactionsIndexedWhileTheUserLoads() {
+        TransactionAnalyticsService[] analytics = new TransactionAnalyticsService[1];
+        // Another request saves and indexes a transaction while the stored rows are read
+        analytics[0] = new TransactionAnalyticsService(persistence(true,
+                user -> analytics[0].index(user, List.of(transaction("QB22222222")))), 2);
+
+        assertThat(analytics[0].query("alice", all).getTransactionsScanned()).isEqualTo(2);
+
+        analytics[0].index("alice", List.of(transaction("QC33333333")));
+        assertThat(analytics[0].query("alice", all).getTransactionsScanned()).isEqualTo(3);
+    }
+
+    @Test
+    void transactionsWithoutAUserAreNotIndexed() {
+        TransactionAnalyticsService analytics = new TransactionAnalyticsService(persistence(false, user -> { }), 2);
+
+        analytics.index(null, List.of(transaction("QA11111111")));
+
+        assertThat(analytics.query("anonymous", all).getTransactionsScanned()).isZero();
+    }
+
+    private static TransactionPersistenceService persistence(boolean enabled, Consumer<String> duringLoad) {
+        return new TransactionPersistenceService(null, null) {
+            @Override
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            @Override
+            public List<TransactionData> findAllByUser(String userId) {
+                List<TransactionData> stored = new ArrayList<>(List.of(transaction("QA11111111")));
+                duringLoad.accept(userId);
+                return stored;
+            }
+        };
+    }
+
+    private static TransactionData transaction(String id) {
+        TransactionData transaction = new TransactionData();
+        transaction.setTransactionId(id);
+        transaction.setType("send_money");
+        return transaction;
+    }
+}
@@ -0,0 +1,124 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.AnalyticsQuery;
+import com.kinduberre.transactionprocessor.dto.AnalyticsRow;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionColumnsTest {
+
+    private final TransactionColumns columns = new TransactionColumns();
+
+    @BeforeEach
+    void setUp() {
+        columns.add(transaction("T1", "send_money", "1000.00", "13.00", "5000.00", "12/3/24", "2:15 PM",
+                Map.of("name", "John Doe"), null));
+        columns.add(transaction("T2", "merchant_payment", "250.00", "0.00", "4750.00", "12/3/24", "6:30 PM",
+                null, "NAIVAS SUPERMARKET"));
+        columns.add(transaction("T3", "send_money", "500.00", "7.00", "4243.00", "2/4/24", "9:00 AM",
+                Map.of("name", "JOHN DOE"), null));
+        columns.add(transaction("T4", "receive_money", "2000.00", null, "6243.00", "3/4/24", "8:00 AM",
+                null, null));
+    }
+
+    @Test
+    void spendByParticipant() {
+        List<AnalyticsRow> rows = columns.query(query(AnalyticsQuery.GroupBy.PARTICIPANT, q -> q.setDirection("outgoing")));
+
+        assertThat(rows).extracting(AnalyticsRow::getKey).containsExactly("JOHN DOE", "NAIVAS SUPERMARKET");
+        assertThat(rows.get(0).getCount()).isEqualTo(2);
+        assertThat(rows.get(0).getTotalAmount()).isEqualByComparingTo("1500.00");
+        assertThat(rows.get(0).getMaxAmount()).isEqualByComparingTo("1000.00");
+    }
+
+    @Test
+    void feesAndClosingBalanceByMonth() {
+        List<AnalyticsRow> rows = columns.query(query(AnalyticsQuery.GroupBy.MONTH, q -> {
+        }));
+
+        assertThat(rows).extracting(AnalyticsRow::getKey).containsExactly("2024-03", "2024-04");
+        assertThat(rows).extracting(AnalyticsRow::getTotalFees)
+                .containsExactly(new BigDecimal("13.00"), new BigDecimal("7.00"));
+        assertThat(rows).extracting(AnalyticsRow::getClosingBalance)
+                .containsExactly(new BigDecimal("4750.00"), new BigDecimal("6243.00"));
+    }
+
+    @Test
+    void filtersByDateAndType() {
+        List<AnalyticsRow> rows = columns.query(query(AnalyticsQuery.GroupBy.DAY, q -> {
+            q.setFrom(LocalDate.of(2024, 3, 12));
+            q.setTo(LocalDate.of(2024, 4, 2));
+            q.setType("send_money");
+        }));
+
+        assertThat(rows).extracting(AnalyticsRow::getKey).containsExactly("2024-03-12", "2024-04-02");
+        assertThat(columns.query(query(AnalyticsQuery.GroupBy.NONE, q -> q.setType("paybill")))).isEmpty();
+    }
+
+    @Test
+    void outlierDatesAddOneGroupEach() {
+        columns.add(transaction("T5", "send_money", "100.00", null, "100.00", "1/1/0001", "9:00 AM", null, null));
+        columns.add(transaction("T6", "send_money", "100.00", null, "100.00", "9999-12-31", "9:00 AM", null, null));
+        columns.add(transaction("T7", "send_money", "100.00", null, "100.00", null, null, null, null));
+
+        List<AnalyticsRow> rows = columns.query(query(AnalyticsQuery.GroupBy.DAY, q -> {
+        }));
+
+        assertThat(rows).extracting(AnalyticsRow::getKey)
+                .containsExactly("0001-01-01", "2024-03-12", "2024-04-02", "2024-04-03", "9999-12-31", "unknown");
+        assertThat(columns.query(query(AnalyticsQuery.GroupBy.MONTH, q -> {
+        }))).extracting(AnalyticsRow::getKey)
+                .containsExactly("0001-01", "2024-03", "2024-04", "9999-12", "unknown");
+    }
+
+    @Test
+    void addingATransactionAgainReplacesIt() {
+        columns.add(transaction("T1", "send_money", "1200.00", "13.00", "4800.00", "12/3/24", "2:15 PM",
+                Map.of("name", "John Doe"), null));
+
+        AnalyticsRow all = columns.query(query(AnalyticsQuery.GroupBy.NONE, q -> {
+        })).get(0);
+        assertThat(all.getCount()).isEqualTo(4);
+        assertThat(all.getTotalAmount()).isEqualByComparingTo("3950.00");
+    }
+
+    @Test
+    void readsTwelveHourTimes() {
+        assertThat(TransactionColumns.minuteOfDay("12:05 AM")).isEqualTo(5);
+        assertThat(TransactionColumns.minuteOfDay("2:15 PM")).isEqualTo(14 * 60 + 15);
+        assertThat(TransactionColumns.minuteOfDay("noon")).isZero();
+    }
+
+    private static AnalyticsQuery query(AnalyticsQuery.GroupBy groupBy, Consumer<AnalyticsQuery> filters) {
+        AnalyticsQuery query = new AnalyticsQuery();
+        query.setGroupBy(groupBy);
+        filters.accept(query);
+        return query;
+    }
+
+    private static TransactionData transaction(String id, String type, String amount, String fee, String balance,
+                                               String date, String time, Object recipient, String merchant) {
+        TransactionData transaction = new TransactionData();
+        transaction.setTransactionId(id);
+        transaction.setType(type);
+        transaction.setAmount(new TransactionData.AmountData(new BigDecimal(amount), "KSH"));
+        if (fee != null) {
+            transaction.setTransactionCost(new TransactionData.AmountData(new BigDecimal(fee), "KSH"));
+        }
+        transaction.setMpesaBalance(new TransactionData.AmountData(new BigDecimal(balance), "KSH"));
+        transaction.setTransactionDate(date);
+        transaction.setTransactionTime(time);
+        transaction.setRecipient(recipient);
+        transaction.setMerchant(merchant);
+        return transaction;
+    }
+}
@@ -0,0 +1,18 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+
+/**
+ * Transactions for tests that only care which transaction is which.
+ */
+final class TransactionFixtures {
+
+    private TransactionFixtures() {
+    }
+
+    static TransactionData transaction(String id) {
+        TransactionData transaction = new TransactionData();
+        transaction.setTransactionId(id);
+        return transaction;
+    }
+}
@@ -0,0 +1,90 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import com.kinduberre.transactionprocessor.entity.TransactionRecord;
+import com.kinduberre.transactionprocessor.repository.TransactionRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionPersistenceServiceTest {
+
+    // Every list passed to upsertAll
+    private final List<List<TransactionRecord>> upserts = new ArrayList<>();
+
+    private final TransactionPersistenceService persistence = persistence();
+
+    @Test
+    void skipsTransactionsWithUnusableIdsAndStoresTheRest() {
+        persistence.save("alice", "session-1", List.of(
+                transaction("QAB1CD2EF3"),
+                transaction(null),
+                transaction(" "),
+                transaction("X".repeat(TransactionPersistenceService.MAX_TRANSACTION_ID_LENGTH + 1)),
+                transaction("QAB1CD2EF4")));
+
+        assertThat(upserts).singleElement().satisfies(records -> assertThat(records)
+                .extracting(TransactionRecord::getTransactionId)
+                .containsExactly("QAB1CD2EF3", "QAB1CD2EF4"));
+    }
+
+    @Test
+    void transactionsWithoutAUserAreNotStored() {
+        persistence.save(null, "session-1", List.of(transaction("QAB1CD2EF3")));
+        persistence.save("U".repeat(TransactionPersistenceService.MAX_USER_ID_LENGTH + 1), "session-1",
+                List.of(transaction("QAB1CD2EF3")));
+
+        assertThat(upserts).isEmpty();
+    }
+
+    @Test
+    void columnValuesAreFittedToTheSchema() {
+        TransactionData transaction = transaction("QAB1CD2EF3");
+        transaction.setStatus("Confirmed, although the message also mentions a reversal");
+        transaction.setMerchant("M".repeat(300));
+        transaction.setTransactionCost(new TransactionData.AmountData(new BigDecimal("1e13"), "KSH"));
+
+        persistence.save("alice", "session-1", List.of(transaction));
+
+        TransactionRecord record = upserts.get(0).get(0);
+        assertThat(record.getStatus()).hasSize(32);
+        assertThat(record.getMerchant()).hasSize(255);
+        assertThat(record.getAmount()).isEqualByComparingTo("100");
+        assertThat(record.getTransactionCost()).isNull();
+        // The stored details keep what was extracted
+        assertThat(record.getDetails()).contains("M".repeat(300));
+    }
+
+    @SuppressWarnings("unchecked")
+    private TransactionPersistenceService persistence() {
+        TransactionRecordRepository repository = (TransactionRecordRepository) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{TransactionRecordRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("upsertAll")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<TransactionRecord> records = (List<TransactionRecord>) args[0];
+                    upserts.add(records);
+                    return records.size();
+                });
+        TransactionPersistenceService service = new TransactionPersistenceService(repository, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "enabled", true);
+        return service;
+    }
+
+    private static TransactionData transaction(String id) {
+        TransactionData transaction = new TransactionData();
+        transaction.setTransactionId(id);
+        transaction.setType("send_money");
+        transaction.setAmount(new TransactionData.AmountData(new BigDecimal("100.00"), "KSH"));
+        transaction.setTransactionDate("12/3/24");
+        return transaction;
+    }
+}
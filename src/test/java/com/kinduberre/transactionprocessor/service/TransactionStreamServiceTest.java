@@ -0,0 +1,138 @@
+package com.kinduberre.transactionprocessor.service;
+
+import com.kinduberre.transactionprocessor.dto.BulkTransactionRequest;
+import com.kinduberre.transactionprocessor.dto.ProcessingError;
+import com.kinduberre.transactionprocessor.dto.ProcessingEvent;
+import com.kinduberre.transactionprocessor.dto.ProcessingStats;
+import com.kinduberre.transactionprocessor.dto.TransactionData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionStreamServiceTest {
+
+    private final AtomicInteger produced = new AtomicInteger();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+    // Produces transactions for as long as the stream accepts them
+    private final TransactionProcessingService endless = new TransactionProcessingService(null, null, null, null,
+            null, null, null, null, null, null, null) {
+        @Override
+        public ProcessingStats processTransactionsStreaming(BulkTransactionRequest request,
+                                                            Consumer<TransactionData> sink,
+                                                            Consumer<ProcessingError> errorSink) {
+            try {
+                for (int i = 0; i < 1_000_000; i++) {
+                    TransactionData transaction = new TransactionData();
+                    transaction.setTransactionId("T" + i);
+                    sink.accept(transaction);
+                    produced.incrementAndGet();
+                }
+                return new ProcessingStats();
+            } finally {
+                stopped.countDown();
+            }
+        }
+    };
+
+    TransactionStreamServiceTest() {
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+    }
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void slowSubscriberHoldsTheProducerBack() throws InterruptedException {
+        TransactionStreamService service = new TransactionStreamService(endless, executor, 1);
+
+        StepVerifier.create(service.stream(new BulkTransactionRequest(List.of("message"))), 0)
+                .thenRequest(5)
+                .expectNextCount(5)
+                .thenAwait(Duration.ofMillis(200))
+                .then(() -> assertThat(produced.get()).isLessThanOrEqualTo(5))
+                .thenRequest(3)
+                .expectNextCount(3)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        // Cancelling interrupts the producer, which stops instead of waiting forever
+        assertThat(stopped.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(produced.get()).isLessThanOrEqualTo(8);
+    }
+
+    @Test
+    void rejectsStreamsBeyondTheLimit() {
+        TransactionStreamService service = new TransactionStreamService(endless, executor, 1);
+        BulkTransactionRequest request = new BulkTransactionRequest(List.of("message"));
+
+        StepVerifier.create(service.stream(request), 0)
+                .then(() -> assertThatThrownBy(() -> service.stream(request))
+                        .isInstanceOf(ResponseStatusException.class)
+                        .hasMessageContaining("503"))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void unsubscribedStreamHoldsNoPermit() {
+        TransactionStreamService service = new TransactionStreamService(endless, executor, 1);
+        BulkTransactionRequest request = new BulkTransactionRequest(List.of("message"));
+
+        // The controller may fail or the request be aborted before the Flux is subscribed
+        service.stream(request);
+
+        StepVerifier.create(service.stream(request), 1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void cancellingAQueuedStreamReturnsItsPermit() throws InterruptedException {
+        TransactionStreamService service = new TransactionStreamService(endless, executor, 2);
+        BulkTransactionRequest request = new BulkTransactionRequest(List.of("message"));
+
+        // Takes the only executor thread, then waits for demand
+        Disposable running = service.stream(request).subscribeWith(new IdleSubscriber());
+        Thread.sleep(100);
+        // Queued behind it; cancelling it before it runs skips the task body entirely
+        Disposable queued = service.stream(request).subscribeWith(new IdleSubscriber());
+        queued.dispose();
+
+        assertThatCode(() -> service.stream(request)).doesNotThrowAnyException();
+        running.dispose();
+        assertThat(stopped.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Subscribes without ever requesting an event.
+     */
+    private static final class IdleSubscriber extends BaseSubscriber<ProcessingEvent> {
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+    }
+}